@@ -0,0 +1,83 @@
+package edu.uw.easysrl.benchmark;
+
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode;
+import edu.uw.easysrl.syntax.model.AgendaItem;
+import edu.uw.easysrl.syntax.parser.Agenda;
+
+/**
+ * Time to push and poll as many items as the A* agenda holds on long sentences, with the {@link Agenda} used by the
+ * parser against a java.util.PriorityQueue. Two items are pushed for each one polled, so the queue grows to half the
+ * number of items before being drained.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class AgendaBenchmark {
+
+	@Param({ "agenda", "priorityQueue" })
+	public String queue;
+
+	@Param({ "10000", "300000" })
+	public int numberOfItems;
+
+	private AgendaItem[] items;
+	private Queue<AgendaItem> agenda;
+
+	@Setup
+	public void setup() {
+		final Random random = new Random(42);
+		items = new AgendaItem[numberOfItems];
+		for (int i = 0; i < numberOfItems; i++) {
+			// Log probabilities. The nodes aren't needed to order items.
+			items[i] = new AgendaItem((SyntaxTreeNode) null, -10.0 * random.nextDouble(), -10.0 * random.nextDouble(),
+					0, 1, false);
+		}
+
+		switch (queue) {
+		case "agenda":
+			agenda = new Agenda(1000);
+			break;
+		case "priorityQueue":
+			agenda = new PriorityQueue<>(1000);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown queue: " + queue);
+		}
+	}
+
+	@Benchmark
+	public void pushAndPoll(final Blackhole blackhole) {
+		agenda.clear();
+		for (int i = 0; i < numberOfItems; i++) {
+			agenda.add(items[i]);
+			if (i % 2 == 1) {
+				blackhole.consume(agenda.poll());
+			}
+		}
+
+		while (!agenda.isEmpty()) {
+			blackhole.consume(agenda.poll());
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package edu.uw.easysrl.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.uw.easysrl.syntax.grammar.BinaryRuleTable;
+import edu.uw.easysrl.syntax.grammar.Category;
+import edu.uw.easysrl.syntax.grammar.Combinator;
+import edu.uw.easysrl.syntax.grammar.SeenRules;
+
+/**
+ * Cost of finding the rules that apply to a pair of categories: computing them with the combinators (as the parser
+ * did per pair before the rules were precomputed), against looking them up in the {@link BinaryRuleTable}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BinaryRuleBenchmark {
+
+	private SyntheticModel model;
+	private Collection<Combinator> combinators;
+	private BinaryRuleTable ruleTable;
+	private Category[] lefts;
+	private Category[] rights;
+
+	@Setup
+	public void setup() throws IOException {
+		model = SyntheticModel.make(20, 25, 42);
+		combinators = Combinator.STANDARD_COMBINATORS;
+		ruleTable = new BinaryRuleTable(new SeenRules(new File(model.getFolder(), "seenRules"),
+				model.getCategories()), combinators);
+
+		// Every ordered pair of lexical categories, which is a superset of what the parser looks up.
+		final List<Category> leftList = new ArrayList<>();
+		final List<Category> rightList = new ArrayList<>();
+		for (final Category left : model.getCategories()) {
+			for (final Category right : model.getCategories()) {
+				leftList.add(left);
+				rightList.add(right);
+			}
+		}
+		lefts = leftList.toArray(new Category[leftList.size()]);
+		rights = rightList.toArray(new Category[rightList.size()]);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		model.delete();
+	}
+
+	@Benchmark
+	public void combinatorGetRules(final Blackhole blackhole) {
+		for (int i = 0; i < lefts.length; i++) {
+			blackhole.consume(Combinator.getRules(lefts[i], rights[i], combinators));
+		}
+	}
+
+	@Benchmark
+	public void ruleTableGetRules(final Blackhole blackhole) {
+		for (int i = 0; i < lefts.length; i++) {
+			blackhole.consume(ruleTable.getRules(lefts[i], rights[i]));
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package edu.uw.easysrl.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.uw.easysrl.main.InputReader.InputToParser;
+import edu.uw.easysrl.syntax.model.Model.ModelFactory;
+import edu.uw.easysrl.syntax.model.SupertagFactoredModel.SupertagFactoredModelFactory;
+import edu.uw.easysrl.syntax.parser.AbstractParser;
+import edu.uw.easysrl.syntax.parser.ParserAStar;
+import edu.uw.easysrl.syntax.parser.ParserBeamSearch;
+import edu.uw.easysrl.syntax.parser.ParserCKY;
+
+/**
+ * Time to parse a batch of supertagged sentences with each of the parsing algorithms, using the supertag-factored
+ * model.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+	/**
+	 * "astar-eager" is A* without the lazy agenda. "astar-nbest" and "astar-lazy-nbest" find the 10 best parses, with
+	 * N-best chart cells or lazy extraction from a 1-best chart. "cky-parallel" and "beam-parallel" fill chart cells in
+	 * parallel on the common fork-join pool. "beam-10" keeps 10 entries per cell, and "beam-10-threshold" also prunes
+	 * entries less than 0.001 times as probable as the best one for the span.
+	 */
+	@Param({ "astar", "astar-eager", "astar-nbest", "astar-lazy-nbest", "cky", "cky-parallel", "beam", "beam-parallel",
+			"beam-10", "beam-10-threshold" })
+	public String algorithm;
+
+	@Param({ "10", "25", "40" })
+	public int sentenceLength;
+
+	private SyntheticModel model;
+	private AbstractParser parser;
+	private List<InputToParser> inputs;
+
+	@Setup
+	public void setup() throws IOException {
+		model = SyntheticModel.make(20, sentenceLength, 42);
+		inputs = model.getInputs();
+
+		final ModelFactory modelFactory = new SupertagFactoredModelFactory(null, model.getCategories(), false);
+		switch (algorithm) {
+		case "astar":
+			parser = new ParserAStar(modelFactory, model.getMaxSentenceLength(), 1, SyntheticModel.ROOT_CATEGORIES,
+					model.getFolder(), 100000);
+			break;
+		case "astar-eager":
+			parser = new ParserAStar(modelFactory, model.getMaxSentenceLength(), 1, SyntheticModel.ROOT_CATEGORIES,
+					model.getFolder(), 100000, false);
+			break;
+		case "astar-nbest":
+			parser = new ParserAStar(modelFactory, model.getMaxSentenceLength(), 10, SyntheticModel.ROOT_CATEGORIES,
+					model.getFolder(), 100000);
+			break;
+		case "astar-lazy-nbest":
+			parser = new ParserAStar(modelFactory, model.getMaxSentenceLength(), 10, SyntheticModel.ROOT_CATEGORIES,
+					model.getFolder(), 100000, true, false, true);
+			break;
+		case "cky":
+			parser = new ParserCKY(modelFactory, model.getMaxSentenceLength(), 1, SyntheticModel.ROOT_CATEGORIES,
+					model.getFolder(), 100000);
+			break;
+		case "cky-parallel":
+			parser = new ParserCKY(modelFactory, model.getMaxSentenceLength(), 1, SyntheticModel.ROOT_CATEGORIES,
+					model.getFolder(), 100000, ForkJoinPool.commonPool());
+			break;
+		case "beam":
+			parser = new ParserBeamSearch(modelFactory, model.getMaxSentenceLength(), 1,
+					SyntheticModel.ROOT_CATEGORIES, model.getFolder(), 100000);
+			break;
+		case "beam-parallel":
+			parser = new ParserBeamSearch(modelFactory, model.getMaxSentenceLength(), 1,
+					SyntheticModel.ROOT_CATEGORIES, model.getFolder(), 100000, ForkJoinPool.commonPool());
+			break;
+		case "beam-10":
+			parser = new ParserBeamSearch(modelFactory, model.getMaxSentenceLength(), 10,
+					SyntheticModel.ROOT_CATEGORIES, model.getFolder(), 100000);
+			break;
+		case "beam-10-threshold":
+			parser = new ParserBeamSearch(modelFactory, model.getMaxSentenceLength(), 10,
+					SyntheticModel.ROOT_CATEGORIES, model.getFolder(), 100000, null, 0.001);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown parsing algorithm: " + algorithm);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		model.delete();
+	}
+
+	@Benchmark
+	public void parse(final Blackhole blackhole) {
+		for (final InputToParser input : inputs) {
+			blackhole.consume(parser.doParsing(input));
+		}
+	}
+}
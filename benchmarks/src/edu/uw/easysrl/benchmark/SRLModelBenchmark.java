@@ -0,0 +1,287 @@
+package edu.uw.easysrl.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.uw.easysrl.dependencies.DependencyStructure;
+import edu.uw.easysrl.dependencies.SRLFrame;
+import edu.uw.easysrl.dependencies.SRLFrame.SRLLabel;
+import edu.uw.easysrl.dependencies.UnlabelledDependency;
+import edu.uw.easysrl.main.InputReader.InputToParser;
+import edu.uw.easysrl.main.InputReader.InputWord;
+import edu.uw.easysrl.syntax.grammar.Category;
+import edu.uw.easysrl.syntax.grammar.Combinator.RuleType;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode;
+import edu.uw.easysrl.syntax.model.AgendaItem;
+import edu.uw.easysrl.syntax.model.Model;
+import edu.uw.easysrl.syntax.model.Model.ModelFactory;
+import edu.uw.easysrl.syntax.model.SRLFactoredModel.SRLFactoredModelFactory;
+import edu.uw.easysrl.syntax.model.feature.ArgumentSlotFeature;
+import edu.uw.easysrl.syntax.model.feature.BilexicalFeature;
+import edu.uw.easysrl.syntax.model.feature.DenseLexicalFeature;
+import edu.uw.easysrl.syntax.model.feature.Feature;
+import edu.uw.easysrl.syntax.model.feature.Feature.BinaryFeature;
+import edu.uw.easysrl.syntax.model.feature.Feature.FeatureKey;
+import edu.uw.easysrl.syntax.model.feature.Feature.RootCategoryFeature;
+import edu.uw.easysrl.syntax.model.feature.FeatureCache;
+import edu.uw.easysrl.syntax.model.feature.FeatureCache.SlotFeatureCache;
+import edu.uw.easysrl.syntax.model.feature.FeatureSet;
+import edu.uw.easysrl.syntax.model.feature.FeatureWeights;
+import edu.uw.easysrl.syntax.model.feature.PrepositionFeature;
+import edu.uw.easysrl.syntax.parser.AbstractParser.UnaryRule;
+import edu.uw.easysrl.syntax.parser.ParserAStar;
+import edu.uw.easysrl.syntax.tagger.Tagger;
+
+/**
+ * Benchmarks for the inner loops of the joint CCG/SRL model. The model has the standard feature templates with random
+ * weights. The calls to {@link Model#combineNodes} and {@link DependencyStructure#apply} are recorded while A* parsing
+ * the synthetic sentences, and then replayed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class SRLModelBenchmark {
+
+	/**
+	 * Limits the number of calls recorded while parsing, to keep the length of an invocation reasonable.
+	 */
+	private final static int MAX_RECORDED_CALLS = 20000;
+	private final static List<SRLLabel> ROLES = ImmutableList.of(SRLFrame.ARG0, SRLFrame.ARG1,
+			SRLFrame.ARG2, SRLFrame.TMP, SRLFrame.LOC);
+	private final static int MAX_DEPENDENCY_LENGTH = 3;
+
+	@Param({ "10", "25", "40" })
+	public int sentenceLength;
+
+	private SyntheticModel model;
+	private List<InputToParser> inputs;
+	private FeatureSet featureSet;
+	private FeatureWeights featureToScore;
+	private SlotFeatureCache slotFeatureCache;
+	private double supertaggerWeight;
+
+	private final List<CombineCall> combineCalls = new ArrayList<>();
+	private final List<DependencyStructure[]> applications = new ArrayList<>();
+
+	@Setup
+	public void setup() throws IOException {
+		model = SyntheticModel.make(20, sentenceLength, 42);
+		inputs = model.getPosTaggedInputs();
+
+		final Tagger tagger = new FixedTagger(model.getCategories(), inputs);
+		featureSet = new FeatureSet(new DenseLexicalFeature(tagger), BilexicalFeature.getBilexicalFeatures(
+				Collections.emptyList(), MAX_DEPENDENCY_LENGTH), ArgumentSlotFeature.argumentSlotFeatures,
+				Feature.unaryRules, PrepositionFeature.prepositionFeaures, RootCategoryFeature.features,
+				BinaryFeature.getFeatures());
+
+		// Random weights for the default (backoff) value of each feature template.
+		final Random random = new Random(42);
+		final Map<FeatureKey, Integer> featureToIndex = new HashMap<>();
+		for (final Feature feature : featureSet.getAllFeatures()) {
+			featureToIndex.put(feature.getDefault(), featureToIndex.size());
+		}
+		final double[] weights = new double[featureToIndex.size()];
+		for (int i = 0; i < weights.length; i++) {
+			weights[i] = random.nextGaussian() * 0.1;
+		}
+		supertaggerWeight = 1.0;
+		weights[featureToIndex.get(featureSet.lexicalCategoryFeatures.getDefault())] = supertaggerWeight;
+
+		featureToScore = FeatureWeights.make(featureToIndex, weights);
+		slotFeatureCache = new SlotFeatureCache(featureSet, featureToScore);
+
+		final ModelFactory modelFactory = new RecordingModelFactory(new SRLFactoredModelFactory(weights, featureSet,
+				model.getCategories(), new SyntheticModel.SyntheticCutoffs(), featureToIndex));
+		final ParserAStar parser = new ParserAStar(modelFactory, model.getMaxSentenceLength(), 1,
+				SyntheticModel.ROOT_CATEGORIES, model.getFolder(), 100000);
+		for (final InputToParser input : inputs) {
+			parser.doParsing(input);
+		}
+
+		for (final CombineCall call : combineCalls) {
+			final RuleType ruleType = call.node.getRuleType();
+			final SyntaxTreeNode left = call.leftChild.getParse();
+			final SyntaxTreeNode right = call.rightChild.getParse();
+			if (ruleType == RuleType.FA) {
+				applications.add(new DependencyStructure[] { left.getDependencyStructure(),
+						right.getDependencyStructure() });
+			} else if (ruleType == RuleType.BA) {
+				applications.add(new DependencyStructure[] { right.getDependencyStructure(),
+						left.getDependencyStructure() });
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		model.delete();
+	}
+
+	@Benchmark
+	public void combineNodes(final Blackhole blackhole) {
+		for (final CombineCall call : combineCalls) {
+			blackhole.consume(call.model.combineNodes(call.leftChild, call.rightChild, call.node));
+		}
+	}
+
+	@Benchmark
+	public void dependencyStructureApply(final Blackhole blackhole) {
+		for (final DependencyStructure[] functorAndArgument : applications) {
+			final List<UnlabelledDependency> resolvedDependencies = new ArrayList<>();
+			blackhole.consume(functorAndArgument[0].apply(functorAndArgument[1], resolvedDependencies));
+			blackhole.consume(resolvedDependencies);
+		}
+	}
+
+	/**
+	 * Scores every role between every pair of nearby words, with a new cache for each sentence (as in parsing).
+	 */
+	@Benchmark
+	public void featureCacheGetScore(final Blackhole blackhole) {
+		for (final InputToParser input : inputs) {
+			final List<InputWord> words = input.getInputWords();
+			final FeatureCache featureCache = new FeatureCache(words, featureToScore, featureSet, supertaggerWeight,
+					slotFeatureCache);
+			for (int predicate = 0; predicate < words.size(); predicate++) {
+				final int end = Math.min(words.size() - 1, predicate + MAX_DEPENDENCY_LENGTH);
+				for (int argument = Math.max(0, predicate - MAX_DEPENDENCY_LENGTH); argument <= end; argument++) {
+					if (argument != predicate) {
+						for (final SRLLabel role : ROLES) {
+							blackhole.consume(featureCache.getScore(predicate, role, argument));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static class CombineCall {
+		private final Model model;
+		private final AgendaItem leftChild;
+		private final AgendaItem rightChild;
+		private final SyntaxTreeNode node;
+
+		private CombineCall(final Model model, final AgendaItem leftChild, final AgendaItem rightChild,
+				final SyntaxTreeNode node) {
+			this.model = model;
+			this.leftChild = leftChild;
+			this.rightChild = rightChild;
+			this.node = node;
+		}
+	}
+
+	/**
+	 * Wraps a model, recording the arguments of calls to combineNodes().
+	 */
+	private class RecordingModelFactory extends ModelFactory {
+		private final ModelFactory modelFactory;
+
+		private RecordingModelFactory(final ModelFactory modelFactory) {
+			this.modelFactory = modelFactory;
+		}
+
+		@Override
+		public Model make(final InputToParser sentence) {
+			final Model model = modelFactory.make(sentence);
+			return new Model(sentence.length()) {
+
+				@Override
+				public double getUpperBoundForWord(final int index) {
+					return model.getUpperBoundForWord(index);
+				}
+
+				@Override
+				public double getOutsideUpperBound(final int start, final int end) {
+					return model.getOutsideUpperBound(start, end);
+				}
+
+				@Override
+				public void buildAgenda(final Queue<AgendaItem> queue, final List<InputWord> words) {
+					model.buildAgenda(queue, words);
+				}
+
+				@Override
+				public AgendaItem combineNodes(final AgendaItem leftChild, final AgendaItem rightChild,
+						final SyntaxTreeNode node) {
+					if (combineCalls.size() < MAX_RECORDED_CALLS) {
+						combineCalls.add(new CombineCall(model, leftChild, rightChild, node));
+					}
+					return model.combineNodes(leftChild, rightChild, node);
+				}
+
+				@Override
+				public AgendaItem unary(final AgendaItem child, final SyntaxTreeNode result, final UnaryRule rule) {
+					return model.unary(child, result, rule);
+				}
+			};
+		}
+
+		@Override
+		public Collection<Category> getLexicalCategories() {
+			return modelFactory.getLexicalCategories();
+		}
+
+		@Override
+		public boolean isUsingDependencies() {
+			return modelFactory.isUsingDependencies();
+		}
+	}
+
+	/**
+	 * Returns the supertags given in the input, rather than running a supertagging model.
+	 */
+	private static class FixedTagger extends Tagger {
+		private final Map<List<InputWord>, List<List<ScoredCategory>>> sentenceToTags = new HashMap<>();
+
+		private FixedTagger(final List<Category> categories, final List<InputToParser> inputs) throws IOException {
+			super(null, 0.0, categories, 50);
+			for (final InputToParser input : inputs) {
+				sentenceToTags.put(input.getInputWords(), input.getInputSupertags());
+			}
+		}
+
+		@Override
+		public List<List<ScoredCategory>> tag(final List<InputWord> words) {
+			return sentenceToTags.get(words);
+		}
+
+		@Override
+		public Map<Category, Double> getCategoryScores(final List<InputWord> sentence, final int wordIndex,
+				final double weight, final Collection<Category> categories) {
+			final Map<Category, Double> result = new HashMap<>();
+			for (final ScoredCategory tag : tag(sentence).get(wordIndex)) {
+				if (categories.contains(tag.getCategory())) {
+					result.put(tag.getCategory(), weight * tag.getScore());
+				}
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package edu.uw.easysrl.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.uw.easysrl.main.InputReader.InputToParser;
+import edu.uw.easysrl.syntax.model.SupertagFactoredModel.SupertagFactoredModelFactory;
+import edu.uw.easysrl.syntax.parser.ParserAStar;
+import edu.uw.easysrl.util.LengthAwareScheduler;
+
+/**
+ * Time to parse a batch of sentences on several threads, with the {@link LengthAwareScheduler} parsing the longest
+ * sentences in its window first, against parsing them in input order. Sentence lengths are skewed: most are short,
+ * but a few are much longer, at random positions in the input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class SchedulerBenchmark {
+
+	private final static int NUMBER_OF_SENTENCES = 200;
+	private final static int SHORT_SENTENCE_LENGTH = 10;
+	private final static int LONG_SENTENCE_LENGTH = 50;
+	private final static double LONG_SENTENCE_PROBABILITY = 0.05;
+
+	/**
+	 * Sentences read ahead per thread, as in the command line parser.
+	 */
+	private final static int WINDOW_PER_THREAD = 16;
+
+	@Param({ "lengthAware", "inputOrder" })
+	public String scheduling;
+
+	@Param({ "4" })
+	public int threads;
+
+	private SyntheticModel model;
+	private ParserAStar parser;
+	private List<InputToParser> inputs;
+
+	@Setup
+	public void setup() throws IOException {
+		final Random random = new Random(42);
+		final int[] sentenceLengths = new int[NUMBER_OF_SENTENCES];
+		for (int i = 0; i < NUMBER_OF_SENTENCES; i++) {
+			sentenceLengths[i] = random.nextDouble() < LONG_SENTENCE_PROBABILITY ? LONG_SENTENCE_LENGTH
+					: SHORT_SENTENCE_LENGTH;
+		}
+
+		model = SyntheticModel.make(sentenceLengths, 42);
+		inputs = model.getInputs();
+		parser = new ParserAStar(new SupertagFactoredModelFactory(null, model.getCategories(), false),
+				model.getMaxSentenceLength(), 1, SyntheticModel.ROOT_CATEGORIES, model.getFolder(), 100000);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		model.delete();
+	}
+
+	@Benchmark
+	public void parse(final Blackhole blackhole) throws InterruptedException {
+		final boolean lengthAware = scheduling.equals("lengthAware");
+		try (LengthAwareScheduler<InputToParser, Object> scheduler = new LengthAwareScheduler<>(threads,
+				WINDOW_PER_THREAD * threads, parser::doParsing, lengthAware ? InputToParser::length : input -> 0,
+				blackhole::consume)) {
+			for (final InputToParser input : inputs) {
+				scheduler.submit(input);
+			}
+		}
+	}
+}
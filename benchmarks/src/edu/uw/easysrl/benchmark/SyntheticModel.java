@@ -0,0 +1,424 @@
+package edu.uw.easysrl.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.uw.easysrl.dependencies.SRLFrame;
+import edu.uw.easysrl.dependencies.SRLFrame.SRLLabel;
+import edu.uw.easysrl.main.InputReader.InputToParser;
+import edu.uw.easysrl.main.InputReader.InputWord;
+import edu.uw.easysrl.main.InputReader.SupertaggedInputReader;
+import edu.uw.easysrl.syntax.grammar.Category;
+import edu.uw.easysrl.syntax.grammar.Preposition;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode;
+import edu.uw.easysrl.syntax.model.CutoffsDictionaryInterface;
+import edu.uw.easysrl.syntax.model.SupertagFactoredModel.SupertagFactoredModelFactory;
+import edu.uw.easysrl.syntax.parser.ParserAStar;
+import edu.uw.easysrl.syntax.tagger.TaggerEmbeddings;
+import edu.uw.easysrl.util.Util.Scored;
+
+/**
+ * Writes a small, self-contained model folder and a set of supertagged sentences, so that the benchmarks run offline
+ * without CCGBank or a trained model. The grammar is a toy fragment of English, but the model files, rules and input
+ * format are the ones the real parser reads.
+ *
+ * Everything is generated from a fixed seed, so runs on different builds see exactly the same inputs.
+ */
+public class SyntheticModel {
+
+	/**
+	 * Dimensions of the word, suffix and capitalization embeddings used by the synthetic {@link TaggerEmbeddings}
+	 * model. These match the released models.
+	 */
+	private final static int EMBEDDINGS_SIZE = 50;
+	private final static int DISCRETE_FEATURES_SIZE = 5;
+
+	public final static List<Category> ROOT_CATEGORIES = ImmutableList.of(Category.valueOf("S[dcl]"),
+			Category.valueOf("S[wq]"), Category.valueOf("S[q]"), Category.valueOf("S[b]\\NP"), Category.valueOf("NP"));
+
+	private final static String[] VERB_FEATURES = { "dcl", "b", "ng", "pt", "pss", "to", "adj", "inv", "q", "wq",
+			"em", "for", "frg", "intj", "poss", "qem" };
+
+	private final static String[] VERB_FRAMES = { "S[F]\\NP", "(S[F]\\NP)/NP", "((S[F]\\NP)/NP)/NP", "(S[F]\\NP)/PP",
+			"((S[F]\\NP)/PP)/NP", "(S[F]\\NP)/(S[to]\\NP)", "(S[F]\\NP)/S[em]", "(S[F]\\NP)/(S[adj]\\NP)" };
+
+	private final static String[] OTHER_CATEGORIES = { "N", "NP", "N/N", "NP[nb]/N", "NP/N", "PP/NP", "(NP\\NP)/NP",
+			"((S\\NP)\\(S\\NP))/NP", "(S\\NP)\\(S\\NP)", "(S\\NP)/(S\\NP)", "S/S", "NP\\NP", "N\\N", "(N/N)/(N/N)",
+			"(NP\\NP)/(S[dcl]\\NP)", "(N\\N)/(S[dcl]\\NP)", "S[em]/S[dcl]", "(S[to]\\NP)/(S[b]\\NP)", "(S\\NP)/NP",
+			"(S[adj]\\NP)/(S[adj]\\NP)", "S[adj]\\NP", "(NP/(N/PP))\\NP", "NP/(N/PP)", "N/PP", ".",
+			"LRB", "RRB" };
+
+	/**
+	 * The lexicon used to generate sentences: each word has a single gold category and POS tag.
+	 */
+	private final static String[][] DETERMINERS = { { "the", "a", "every", "some", "this" }, { "NP[nb]/N", "DT" } };
+	private final static String[][] ADJECTIVES = { { "big", "red", "old", "quick", "new", "local" }, { "N/N", "JJ" } };
+	private final static String[][] NOUNS = { { "dog", "cat", "park", "telescope", "man", "report", "market",
+			"company", "shares", "river" }, { "N", "NN" } };
+	private final static String[][] NAMES = { { "John", "Mary", "IBM", "Paris", "Smith" }, { "N", "NNP" } };
+	private final static String[][] TRANSITIVE_VERBS = { { "saw", "bought", "likes", "sold", "visited" },
+			{ "(S[dcl]\\NP)/NP", "VBD" } };
+	private final static String[][] INTRANSITIVE_VERBS = { { "slept", "fell", "rose", "arrived" },
+			{ "S[dcl]\\NP", "VBD" } };
+	private final static String[][] PREPOSITIONS = { { "in", "with", "near", "on", "by" }, { "(NP\\NP)/NP", "IN" } };
+	private final static String VP_PREPOSITION = "((S\\NP)\\(S\\NP))/NP";
+	private final static String[] FULL_STOP = { ".", ".", "." };
+
+	/**
+	 * Unary rules, with the coindexation used to build their dependency structures.
+	 */
+	private final static String UNARY_RULES = Stream.of("N_1 NP_1", "(S[pss]\\NP_1)_2 (NP_1\\NP_1)_2",
+			"(S[ng]\\NP_1)_2 (NP_1\\NP_1)_2", "(S[adj]\\NP_1)_2 (NP_1\\NP_1)_2", "(S[to]\\NP_1)_2 (NP_1\\NP_1)_2",
+			"(S[to]\\NP_1)_2 (N_1\\N_1)_2", "(S[dcl]/NP_1)_2 (NP_1\\NP_1)_2",
+			"(S[ng]\\NP_1)_2 ((S_3\\NP_1)_3\\(S_3\\NP_1)_3)_2", "(S[pss]\\NP_1)_2 ((S_3\\NP_1)_3\\(S_3\\NP_1)_3)_2",
+			"(S[ng]\\NP_1)_2 NP_2", "NP_1 (S[X]_2/(S[X]_2\\NP_1)_2)_2",
+			"NP_1 ((S[X]_2\\NP_3)_2\\((S[X]_2\\NP_3)_2/NP_1)_2)_2",
+			"PP_1 ((S[X]_2\\NP_3)_2\\((S[X]_2\\NP_3)_2/PP_1)_2)_2").collect(Collectors.joining("\n"));
+
+	/**
+	 * No categories are marked up, so they all use the default coindexation, where the word heads the result.
+	 */
+	private final static String MARKEDUP = "# Synthetic model: no marked up categories.";
+
+	private final File folder;
+	private final List<Category> categories;
+	private final List<String> supertaggedSentences;
+	private final Map<String, String> wordToPos = new LinkedHashMap<>();
+
+	private SyntheticModel(final File folder, final List<Category> categories,
+			final List<String> supertaggedSentences) {
+		this.folder = folder;
+		this.categories = categories;
+		this.supertaggedSentences = supertaggedSentences;
+	}
+
+	/**
+	 * Writes a new model folder to a temporary directory, along with numberOfSentences sentences of roughly the
+	 * requested length.
+	 */
+	public static SyntheticModel make(final int numberOfSentences, final int sentenceLength, final long seed)
+			throws IOException {
+		final int[] sentenceLengths = new int[numberOfSentences];
+		Arrays.fill(sentenceLengths, sentenceLength);
+		return make(sentenceLengths, seed);
+	}
+
+	/**
+	 * Writes a new model folder to a temporary directory, along with one sentence of roughly each of the requested
+	 * lengths.
+	 */
+	public static SyntheticModel make(final int[] sentenceLengths, final long seed) throws IOException {
+		final File folder = Files.createTempDirectory("easysrl-benchmark").toFile();
+		final Random random = new Random(seed);
+
+		final Set<String> categoryStrings = new LinkedHashSet<>(Arrays.asList(OTHER_CATEGORIES));
+		for (final String frame : VERB_FRAMES) {
+			for (final String feature : VERB_FEATURES) {
+				categoryStrings.add(frame.replace("F", feature));
+			}
+		}
+		categoryStrings.add(VP_PREPOSITION);
+		final List<Category> categories = ImmutableList.copyOf(categoryStrings.stream().map(Category::valueOf)
+				.collect(Collectors.toList()));
+
+		write(folder, "categories", categories.stream().map(Category::toString).collect(Collectors.joining("\n")));
+		write(folder, "unaryRules", UNARY_RULES);
+		write(folder, "markedup", MARKEDUP);
+
+		final List<List<String[]>> goldSentences = new ArrayList<>(sentenceLengths.length);
+		for (final int sentenceLength : sentenceLengths) {
+			goldSentences.add(makeSentence(sentenceLength, random));
+		}
+
+		final List<String> supertagged = goldSentences.stream().map(s -> supertag(s, categories, random))
+				.collect(Collectors.toList());
+		final SyntheticModel result = new SyntheticModel(folder, categories, supertagged);
+		for (final List<String[]> sentence : goldSentences) {
+			for (final String[] word : sentence) {
+				result.wordToPos.put(word[0], word[2]);
+			}
+		}
+
+		result.writeSeenRules(goldSentences);
+		result.writeTagger(random);
+		return result;
+	}
+
+	/**
+	 * Generates a sentence of (word, category, POS) triples, of at least the requested length.
+	 */
+	private static List<String[]> makeSentence(final int length, final Random random) {
+		final List<String[]> result = new ArrayList<>(length + 5);
+		addClause(result, random);
+		while (result.size() < length - 1) {
+			// Prepositional phrase, attached to the verb phrase or the last noun phrase.
+			final String[] preposition = pick(PREPOSITIONS, random);
+			if (random.nextBoolean()) {
+				preposition[1] = VP_PREPOSITION;
+			}
+			result.add(preposition);
+			addNounPhrase(result, random);
+		}
+
+		result.add(FULL_STOP.clone());
+		return result;
+	}
+
+	private static void addClause(final List<String[]> result, final Random random) {
+		addNounPhrase(result, random);
+		if (random.nextDouble() < 0.7) {
+			result.add(pick(TRANSITIVE_VERBS, random));
+			addNounPhrase(result, random);
+		} else {
+			result.add(pick(INTRANSITIVE_VERBS, random));
+		}
+	}
+
+	private static void addNounPhrase(final List<String[]> result, final Random random) {
+		if (random.nextDouble() < 0.2) {
+			result.add(pick(NAMES, random));
+			return;
+		}
+
+		result.add(pick(DETERMINERS, random));
+		while (random.nextDouble() < 0.3) {
+			result.add(pick(ADJECTIVES, random));
+		}
+		result.add(pick(NOUNS, random));
+	}
+
+	private static String[] pick(final String[][] wordsAndTags, final Random random) {
+		final String[] words = wordsAndTags[0];
+		return new String[] { words[random.nextInt(words.length)], wordsAndTags[1][0], wordsAndTags[1][1] };
+	}
+
+	/**
+	 * Formats a sentence for {@link SupertaggedInputReader}. Each word gets its gold category plus a few distractors.
+	 * The gold category is usually, but not always, the most probable.
+	 */
+	private static String supertag(final List<String[]> sentence, final List<Category> categories,
+			final Random random) {
+		final List<String> result = new ArrayList<>(sentence.size());
+		for (final String[] word : sentence) {
+			final Category gold = Category.valueOf(word[1]);
+			final Map<Category, Double> tagDistribution = new LinkedHashMap<>();
+			double remaining = 1.0;
+			final double goldProbability = random.nextDouble() < 0.8 ? 0.5 + 0.45 * random.nextDouble()
+					: 0.2 * random.nextDouble() + 0.05;
+			tagDistribution.put(gold, goldProbability);
+			remaining -= goldProbability;
+
+			final int distractors = 2 + random.nextInt(4);
+			while (tagDistribution.size() <= distractors) {
+				final Category distractor = categories.get(random.nextInt(categories.size()));
+				if (!tagDistribution.containsKey(distractor)) {
+					final double probability = remaining * (0.3 + 0.5 * random.nextDouble());
+					tagDistribution.put(distractor, probability);
+					remaining -= probability;
+				}
+			}
+
+			final StringBuilder entry = new StringBuilder(word[0]);
+			for (final Map.Entry<Category, Double> tag : tagDistribution.entrySet()) {
+				entry.append("|").append(tag.getKey()).append("=").append(Math.log(tag.getValue()));
+			}
+			result.add(entry.toString());
+		}
+
+		return String.join(" ", result);
+	}
+
+	/**
+	 * Writes the 'seenRules' file, by parsing the gold-tagged sentences and recording the pairs of categories that
+	 * combine --- the same way the file is made from CCGBank.
+	 */
+	private void writeSeenRules(final List<List<String[]>> goldSentences) throws IOException {
+		final ParserAStar parser = new ParserAStar(new SupertagFactoredModelFactory(null, categories, false),
+				getMaxSentenceLength(), 1, ROOT_CATEGORIES, folder, 100000);
+		final SupertaggedInputReader reader = new SupertaggedInputReader(categories);
+		final Set<String> seenRules = new LinkedHashSet<>();
+		for (final List<String[]> sentence : goldSentences) {
+			final String goldTagged = sentence.stream().map(word -> word[0] + "|" + word[1] + "=0.0")
+					.collect(Collectors.joining(" "));
+			final List<Scored<SyntaxTreeNode>> parses = parser.doParsing(reader.readInput(goldTagged));
+			if (parses != null) {
+				for (final Scored<SyntaxTreeNode> parse : parses) {
+					addSeenRules(parse.getObject(), seenRules);
+				}
+			}
+		}
+
+		write(folder, "seenRules", String.join("\n", seenRules));
+	}
+
+	private static void addSeenRules(final SyntaxTreeNode parse, final Set<String> result) {
+		if (parse.getChildren().size() == 2) {
+			result.add(parse.getChild(0).getCategory() + " " + parse.getChild(1).getCategory());
+		}
+
+		for (final SyntaxTreeNode child : parse.getChildren()) {
+			addSeenRules(child, result);
+		}
+	}
+
+	/**
+	 * Writes random embeddings and classifier weights in the format read by {@link TaggerEmbeddings}.
+	 */
+	private void writeTagger(final Random random) throws IOException {
+		final Set<String> words = new LinkedHashSet<>(Arrays.asList("*left_pad*", "*right_pad*", "*unknown_lower*",
+				"*unknown_upper*", "*unknown_special*"));
+		final Set<String> suffixes = new LinkedHashSet<>(Arrays.asList("*suffix_pad*", "*unknown_suffix*"));
+		for (final String word : wordToPos.keySet()) {
+			words.add(word.toLowerCase(Locale.ENGLISH));
+			suffixes.add((word.length() > 1 ? word.substring(word.length() - 2) : "_" + word).toLowerCase(
+					Locale.ENGLISH));
+		}
+
+		write(folder, "embeddings.words", makeEmbeddings(words, EMBEDDINGS_SIZE, random));
+		write(folder, "suffix", makeEmbeddings(suffixes, DISCRETE_FEATURES_SIZE, random));
+		write(folder, "capitals", makeEmbeddings(Arrays.asList("*lower_case*", "*upper_case*", "*caps_pad*"),
+				DISCRETE_FEATURES_SIZE, random));
+
+		final int totalFeatures = (EMBEDDINGS_SIZE + 2 * DISCRETE_FEATURES_SIZE) * 7;
+		final StringBuilder classifier = new StringBuilder();
+		final StringBuilder bias = new StringBuilder();
+		for (int i = 0; i < categories.size(); i++) {
+			classifier.append(randomVector(totalFeatures, random)).append("\n");
+			bias.append(random.nextGaussian() * 0.1).append("\n");
+		}
+
+		write(folder, "classifier", classifier.toString());
+		write(folder, "bias", bias.toString());
+	}
+
+	private static String makeEmbeddings(final Collection<String> keys, final int size, final Random random) {
+		return keys.stream().map(key -> key + " " + randomVector(size, random)).collect(Collectors.joining("\n"));
+	}
+
+	private static String randomVector(final int size, final Random random) {
+		final StringBuilder result = new StringBuilder();
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				result.append(" ");
+			}
+			result.append(random.nextGaussian() * 0.1);
+		}
+		return result.toString();
+	}
+
+	private static void write(final File folder, final String name, final String contents) throws IOException {
+		Files.write(new File(folder, name).toPath(), contents.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public File getFolder() {
+		return folder;
+	}
+
+	public List<Category> getCategories() {
+		return categories;
+	}
+
+	public int getMaxSentenceLength() {
+		return 250;
+	}
+
+	/**
+	 * The sentences, in the format read by {@link SupertaggedInputReader}.
+	 */
+	public List<String> getSupertaggedSentences() {
+		return supertaggedSentences;
+	}
+
+	/**
+	 * The sentences, read with {@link SupertaggedInputReader}.
+	 */
+	public List<InputToParser> getInputs() {
+		final SupertaggedInputReader reader = new SupertaggedInputReader(categories);
+		return supertaggedSentences.stream().map(reader::readInput).collect(Collectors.toList());
+	}
+
+	/**
+	 * The sentences, with POS tags added to the words (for models with features that use them).
+	 */
+	public List<InputToParser> getPosTaggedInputs() {
+		return getInputs()
+				.stream()
+				.map(input -> new InputToParser(input.getInputWords().stream()
+						.map(word -> new InputWord(word.word, wordToPos.get(word.word), "O"))
+						.collect(Collectors.toList()), null, input.getInputSupertags(), true))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Deletes the model folder.
+	 */
+	public void delete() throws IOException {
+		try (Stream<Path> files = Files.walk(folder.toPath())) {
+			for (final Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	/**
+	 * Stands in for the {@link edu.uw.easysrl.syntax.model.CutoffsDictionary}, which is built from the training
+	 * corpus. Allows a small set of roles for every argument of verbs and prepositions, at short distances.
+	 */
+	static class SyntheticCutoffs implements CutoffsDictionaryInterface {
+		private static final long serialVersionUID = 1L;
+		private final static Category VERB_PHRASE = Category.valueOf("S\\NP");
+		private final static List<SRLLabel> ROLES = ImmutableList.of(SRLFrame.NONE, SRLFrame.ARG0, SRLFrame.ARG1,
+				SRLFrame.ARG2, SRLFrame.TMP, SRLFrame.LOC);
+		private final static List<Integer> OFFSETS = ImmutableList.of(-3, -2, -1, 1, 2, 3);
+
+		@Override
+		public boolean isFrequent(final Category category, final int argumentNumber, final SRLLabel label) {
+			return true;
+		}
+
+		@Override
+		public boolean isFrequent(final SRLLabel label, final int offset) {
+			return true;
+		}
+
+		@Override
+		public Collection<SRLLabel> getRoles(final String word, final Category category,
+				final Preposition preposition, final int argumentNumber) {
+			return ROLES;
+		}
+
+		@Override
+		public boolean isFrequentWithAnySRLLabel(final Category category, final int argumentNumber) {
+			return category.isFunctionInto(VERB_PHRASE) || category.getHeadCategory().equals(Category.PP)
+					|| category.isFunctionIntoModifier();
+		}
+
+		@Override
+		public Map<String, Collection<Category>> getTagDict() {
+			return null;
+		}
+
+		@Override
+		public Collection<Integer> getOffsetsForLabel(final SRLLabel label) {
+			return OFFSETS;
+		}
+	}
+}
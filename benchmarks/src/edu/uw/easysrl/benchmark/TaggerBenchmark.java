@@ -0,0 +1,72 @@
+package edu.uw.easysrl.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.uw.easysrl.main.InputReader.InputToParser;
+import edu.uw.easysrl.main.InputReader.InputWord;
+import edu.uw.easysrl.syntax.tagger.TaggerEmbeddings;
+import edu.uw.easysrl.syntax.tagger.TaggerEmbeddings.Precision;
+
+/**
+ * Time for {@link TaggerEmbeddings} to supertag a batch of sentences, using a model with randomly initialized weights
+ * of the same dimensions as the released models, stored at each {@link Precision}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class TaggerBenchmark {
+
+	@Param({ "10", "25", "40" })
+	public int sentenceLength;
+
+	@Param({ "DOUBLE", "FLOAT", "INT8" })
+	public Precision precision;
+
+	private SyntheticModel model;
+	private TaggerEmbeddings tagger;
+	private List<List<InputWord>> sentences;
+
+	@Setup
+	public void setup() throws IOException {
+		model = SyntheticModel.make(20, sentenceLength, 42);
+		tagger = new TaggerEmbeddings(model.getFolder(), 0.0001, 50, null, precision);
+		sentences = model.getInputs().stream().map(InputToParser::getInputWords).collect(Collectors.toList());
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		model.delete();
+	}
+
+	@Benchmark
+	public void tag(final Blackhole blackhole) {
+		for (final List<InputWord> sentence : sentences) {
+			blackhole.consume(tagger.tag(sentence));
+		}
+	}
+
+	@Benchmark
+	public void tagBatch(final Blackhole blackhole) {
+		tagger.tagBatch(sentences.stream()).forEach(blackhole::consume);
+	}
+}
@@ -14,6 +14,7 @@ import java.util.Objects;
 import java.util.Set;
 
 import com.carrotsearch.hppc.IntIntHashMap;
+import com.google.common.collect.ImmutableMap;
 
 import edu.uw.easysrl.syntax.grammar.Category;
 import edu.uw.easysrl.syntax.grammar.Preposition;
@@ -80,12 +81,16 @@ public class Coindexation implements Serializable {
 	 */
 	private static final long serialVersionUID = 1201129160464966099L;
 
-	private static final Map<Category, String> categoryToMarkedUpCategory = new HashMap<>();
+	/**
+	 * Immutable snapshot, replaced whenever a new markedup file is loaded. Readers never need to lock.
+	 */
+	private static volatile Map<Category, String> categoryToMarkedUpCategory = ImmutableMap.of();
 
 	/**
 	 * Loads co-indexation information from the specified file.
 	 */
-	public static void parseMarkedUpFile(final File file) throws IOException {
+	public static synchronized void parseMarkedUpFile(final File file) throws IOException {
+		final Map<Category, String> result = new HashMap<>(categoryToMarkedUpCategory);
 		final Iterator<String> lines = Util.readFileLineByLine(file);
 		while (lines.hasNext()) {
 			String line = lines.next();
@@ -94,8 +99,10 @@ public class Coindexation implements Serializable {
 			}
 			line = line.replaceAll(":B", "");
 
-			categoryToMarkedUpCategory.put(Category.valueOf(line), line);
+			result.put(Category.valueOf(line), line);
 		}
+
+		categoryToMarkedUpCategory = ImmutableMap.copyOf(result);
 	}
 
 	Coindexation normalize(final IntIntHashMap substitutions, final int minValue) {
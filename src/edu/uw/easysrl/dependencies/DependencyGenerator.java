@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Stack;
 
@@ -13,6 +14,7 @@ import com.google.common.collect.Multimap;
 import edu.uw.easysrl.syntax.grammar.Category;
 import edu.uw.easysrl.syntax.grammar.Combinator;
 import edu.uw.easysrl.syntax.grammar.Combinator.RuleProduction;
+import edu.uw.easysrl.syntax.grammar.Combinator.RuleType;
 import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode;
 import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode.SyntaxTreeNodeBinary;
 import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode.SyntaxTreeNodeLabelling;
@@ -109,6 +111,15 @@ public class DependencyGenerator {
 					return;
 				}
 			}
+
+			if (node.getRuleType() == RuleType.NOISE) {
+				// e.g. fragments of a partial parse. There are no dependencies between the children.
+				stack.push(new SyntaxTreeNodeBinary(node.getCategory(), left, right, RuleType.NOISE, node
+						.getHeadIsLeft(), node.getHeadIsLeft() ? left.getDependencyStructure() : right
+						.getDependencyStructure(), Collections.emptyList()));
+				return;
+			}
+
 			throw new IllegalStateException("Didn't find matching binary rule: " + left.getCategory() + " + "
 					+ right.getCategory() + " --> " + node.getCategory());
 
@@ -23,14 +23,14 @@ package edu.uw.easysrl.lemmatizer;
  */
 
 import java.io.StringReader;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
 public class MorphaStemmer {
 	private static final Pattern whitespace = Pattern.compile("\\s+");
 
-	private final static Map<String, String> cache = new HashMap<>();
+	private final static ConcurrentMap<String, String> cache = new ConcurrentHashMap<>();
 
 	/***
 	 * Stem the supplied token.
@@ -47,9 +47,7 @@ public class MorphaStemmer {
 						"Token may not contain a space: " + token);
 			}
 			result = morpha(cleanText(token), false);
-			synchronized (cache) {
-				cache.put(token, result);
-			}
+			cache.putIfAbsent(token, result);
 		}
 
 		return result;
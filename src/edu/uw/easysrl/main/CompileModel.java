@@ -0,0 +1,70 @@
+package edu.uw.easysrl.main;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import edu.uw.easysrl.syntax.model.feature.Feature.FeatureKey;
+import edu.uw.easysrl.syntax.model.feature.FeatureWeights;
+import edu.uw.easysrl.syntax.tagger.TaggerEmbeddings;
+import edu.uw.easysrl.syntax.tagger.TaggerEmbeddings.Precision;
+import edu.uw.easysrl.util.Util;
+
+/**
+ * Converts the text files of a model into binary files, which are memory-mapped when the model is loaded. This makes
+ * startup much faster, and lets parsers running in different JVMs on the same machine share the model's memory.
+ *
+ * Compiles the supertagger in the model folder, and in its pipeline sub-folder if there is one, and the feature
+ * weights of a joint model. The compiled files are used automatically when they are present; delete them to go back to
+ * the original files.
+ *
+ * Usage: CompileModel modelFolder [double|float|int8]
+ */
+public class CompileModel {
+
+	public static void main(final String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: CompileModel modelFolder [double|float|int8]");
+			return;
+		}
+
+		final File modelFolder = Util.getFile(args[0]);
+		final Precision precision = args.length > 1 ? Precision.valueOf(args[1].toUpperCase())
+				: TaggerEmbeddings.DEFAULT_PRECISION;
+
+		boolean compiledAnything = false;
+		if (new File(modelFolder, "featureToIndex").exists()) {
+			compileFeatureWeights(modelFolder);
+			compiledAnything = true;
+		}
+
+		for (final File folder : new File[] { modelFolder, new File(modelFolder, "pipeline") }) {
+			if (new File(folder, "classifier").exists()) {
+				compileTagger(folder, precision);
+				compiledAnything = true;
+			}
+		}
+
+		if (!compiledAnything) {
+			System.err.println("No supertagger or feature weights found in " + modelFolder);
+		}
+	}
+
+	private static void compileFeatureWeights(final File folder) throws IOException {
+		final long start = System.currentTimeMillis();
+		final Map<FeatureKey, Integer> featureToIndex = Util.deserialize(new File(folder, "featureToIndex"));
+		final double[] weights = Util.deserialize(new File(folder, "weights"));
+		final FeatureWeights featureWeights = FeatureWeights.make(featureToIndex, weights);
+		featureWeights.save(new File(folder, FeatureWeights.COMPILED_FILE));
+		System.err.println("Compiled " + new File(folder, FeatureWeights.COMPILED_FILE) + " (" + featureWeights.size()
+				+ " features) in " + (System.currentTimeMillis() - start) + "ms");
+	}
+
+	private static void compileTagger(final File folder, final Precision precision) throws IOException {
+		final long start = System.currentTimeMillis();
+		final TaggerEmbeddings tagger = new TaggerEmbeddings(folder, 0.0, 1, null, precision);
+		tagger.saveCompiledModel(folder);
+		System.err.println("Compiled " + new File(folder, TaggerEmbeddings.COMPILED_MODEL) + " (" + precision + ", "
+				+ tagger.getParameterSizeInBytes() / 1024 + "KB) in " + (System.currentTimeMillis() - start) + "ms");
+	}
+}
@@ -5,15 +5,17 @@ import java.io.File;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.InputMismatchException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Scanner;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -36,7 +38,10 @@ import edu.uw.easysrl.syntax.model.SRLFactoredModel.SRLFactoredModelFactory;
 import edu.uw.easysrl.syntax.model.SupertagFactoredModel.SupertagFactoredModelFactory;
 import edu.uw.easysrl.syntax.model.feature.Feature.FeatureKey;
 import edu.uw.easysrl.syntax.model.feature.FeatureSet;
+import edu.uw.easysrl.syntax.model.feature.FeatureWeights;
+import edu.uw.easysrl.syntax.parser.Deadline;
 import edu.uw.easysrl.syntax.parser.Parser;
+import edu.uw.easysrl.syntax.parser.ParserAdaptiveSupertagging;
 import edu.uw.easysrl.syntax.parser.ParserAStar;
 import edu.uw.easysrl.syntax.parser.ParserBeamSearch;
 import edu.uw.easysrl.syntax.parser.ParserCKY;
@@ -51,10 +56,31 @@ import edu.uw.easysrl.syntax.tagger.Tagger;
 import edu.uw.easysrl.syntax.tagger.TaggerEmbeddings;
 import edu.uw.easysrl.syntax.training.PipelineTrainer.LabelClassifier;
 import edu.uw.easysrl.syntax.training.Training;
+import edu.uw.easysrl.util.LengthAwareScheduler;
 import edu.uw.easysrl.util.Util;
 
 public class EasySRL {
 
+    /**
+     * Maximum number of sentences per thread that can be read ahead of the output.
+     */
+    private static final int MAX_PENDING_SENTENCES_PER_THREAD = 16;
+
+    /**
+     * A line of input, and its length in tokens, which the scheduler uses to parse long sentences first.
+     */
+    private static class InputLine {
+        private final int id;
+        private final String line;
+        private final int length;
+
+        private InputLine(final int id, final String line) {
+            this.id = id;
+            this.line = line;
+            this.length = line.split("\\s+").length;
+        }
+    }
+
     /**
      * Command Line Interface
      */
@@ -84,12 +110,36 @@ public class EasySRL {
         @Option(shortName = "r", defaultValue = {"S[dcl]", "S[wq]", "S[q]", "S[b]\\NP", "NP"}, description = "(Optional) List of valid categories for the root node of the parse. Defaults to: S[dcl] S[wq] S[q] NP S[b]\\NP")
         List<Category> getRootCategories();
 
+        @Option(description = "(Optional) For N-best A* parsing, find the best parse with a 1-best chart, and then extract the other parses from it lazily. Much faster than keeping N parses in each chart cell.")
+        boolean getLazyNbest();
+
         @Option(defaultValue = "0.01", description = "(Optional) Prunes lexical categories whose probability is less than this ratio of the best category. Decreasing this value will slightly improve accuracy, and give more varied n-best output, but decrease speed. Defaults to 0.01 (currently only used for the joint model).")
         double getSupertaggerbeam();
 
+        @Option(defaultValue = {}, description = "(Optional) Adaptive supertagging for the pipeline model: a list of supertagger beams, from tightest to widest, e.g. \"0.1 0.01 0.001\". Each sentence is parsed with the first beam, and only re-parsed with the next one if that fails. The supertagger is only run once.")
+        List<Double> getAdaptiveSupertaggerBeams();
+
         @Option(shortName = "w", defaultValue = "1.0", description = "Use a specified supertagger weight, instead of the pretrained value.")
         double getSupertaggerWeight();
 
+        @Option(shortName = "t", defaultValue = "1", description = "(Optional) Number of threads to parse with. Output is always in input order. Defaults to 1.")
+        int getThreads();
+
+        @Option(description = "(Optional) For \"cky\" and \"beam\" parsing, fill the cells of each span length of the chart in parallel, on all available processors. This reduces the time to parse each long sentence. Only used with the supertag-factored model.")
+        boolean getParallelChart();
+
+        @Option(defaultValue = "0.0", description = "(Optional) For \"beam\" parsing, also prune chart entries whose probability is less than this times the probability of the best entry for the same span, e.g. 0.0001. Defaults to 0 (no threshold).")
+        double getBeamThreshold();
+
+        @Option(description = "(Optional) Parse sentences in input order. By default, when using multiple threads, the longest sentences that have been read ahead are parsed first, so that a long sentence doesn't hold up the output at the end. Output is in input order either way.")
+        boolean getInputOrderScheduling();
+
+        @Option(defaultValue = "0", description = "(Optional) Maximum time to spend parsing each sentence, in milliseconds. Sentences that time out are output as parse failures. Defaults to 0 (no limit).")
+        long getTimeout();
+
+        @Option(description = "(Optional) If the joint model's A* parser fills its chart or runs out of time, output the best cover of the sentence by the parse fragments it found, instead of re-parsing with the pipeline model.")
+        boolean getPartialParses();
+
         @Option(helpRequest = true, description = "Display this message", shortName = "h")
         boolean getHelp();
 
@@ -132,16 +182,18 @@ public class EasySRL {
             final ParsePrinter printer = outputFormat.printer;
 
             final SRLParser parser2;
+            final PipelineSRLParser pipeline;
             if (pipelineFolder.exists()) {
                 // Joint model
                 final POSTagger posTagger = POSTagger.getStanfordTagger(new File(pipelineFolder, "posTagger"));
-                final PipelineSRLParser pipeline = makePipelineParser(pipelineFolder, commandLineOptions, 0.000001,
+                pipeline = makePipelineParser(pipelineFolder, commandLineOptions, 0.000001,
                         printer.outputsDependencies());
                 parser2 = new BackoffSRLParser(new JointSRLParser(makeParser(commandLineOptions, 20000, true,
                         Optional.of(commandLineOptions.getSupertaggerWeight()), true), posTagger), pipeline);
             } else {
                 // Pipeline
-                parser2 = makePipelineParser(modelFolder, commandLineOptions, 0.000001, printer.outputsDependencies());
+                pipeline = makePipelineParser(modelFolder, commandLineOptions, 0.000001, printer.outputsDependencies());
+                parser2 = pipeline;
             }
 
             final SRLParser parser;
@@ -181,54 +233,87 @@ public class EasySRL {
 
             final Stopwatch timer = Stopwatch.createStarted();
             final AtomicInteger parsedSentences = new AtomicInteger();
-            final ExecutorService executorService = Executors.newFixedThreadPool(1// commandLineOptions.getThreads()
-            );
-
-            final BufferedWriter sysout = new BufferedWriter(new OutputStreamWriter(System.out));
-
-            int id = 0;
-            while (inputLines.hasNext()) {
-                // Read each sentence, either from STDIN or a parse.
-                final String line = inputLines instanceof Scanner ? ((Scanner) inputLines).nextLine().trim()
-                        : inputLines.next();
-                if (!line.isEmpty() && !line.startsWith("#")) {
-                    id++;
-                    final int id2 = id;
-
-                    // Make a new ExecutorService job for each sentence to parse.
-                    executorService.execute(new Runnable() {
-                        @Override
-                        public void run() {
-
-                            final List<CCGandSRLparse> parses = parser.parseTokens(reader.readInput(line)
-                                    .getInputWords());
-                            final String output = printer.printJointParses(parses, id2);
+            final int numThreads = commandLineOptions.getThreads();
+            if (numThreads < 1) {
+                throw new InputMismatchException("Number of threads must be at least 1: " + numThreads);
+            }
+            final long timeout = commandLineOptions.getTimeout();
+            final AtomicInteger timedOutSentences = new AtomicInteger();
+
+            // Parses finish out of order when using multiple threads, so the scheduler buffers them until they can be
+            // written in the same order as the input. It only reads a limited number of sentences ahead of the output,
+            // which stops us reading the whole of a large input file before anything gets parsed. The output is closed
+            // after the scheduler, so it's flushed even if a job failed.
+            try (BufferedWriter sysout = new BufferedWriter(new OutputStreamWriter(System.out));
+                    LengthAwareScheduler<InputLine, String> scheduler = new LengthAwareScheduler<>(numThreads,
+                    MAX_PENDING_SENTENCES_PER_THREAD * numThreads, inputLine -> {
+                        try {
+                            final Deadline deadline = timeout > 0 ? Deadline.after(timeout, TimeUnit.MILLISECONDS)
+                                    : Deadline.NONE;
+                            final List<CCGandSRLparse> parses = parser.parseTokens(reader.readInput(inputLine.line)
+                                    .getInputWords(), deadline);
                             parsedSentences.getAndIncrement();
-                            synchronized (printer) {
-                                try {
-                                    // It's a bit faster to buffer output than use
-                                    // System.out.println() directly.
-                                    sysout.write(output);
-                                    sysout.newLine();
-
-                                    if (readingFromStdin) {
-                                        sysout.flush();
-                                    }
-                                } catch (final IOException e) {
-                                    throw new RuntimeException(e);
-                                }
+                            return printer.printJointParses(parses, inputLine.id);
+                        } catch (final Deadline.ExpiredException e) {
+                            timedOutSentences.getAndIncrement();
+                            return printer.printJointParses(null, inputLine.id);
+                        } catch (final RuntimeException | StackOverflowError e) {
+                            // Still output something, so that the output lines up with the input. A very deep
+                            // derivation can overflow the stack, but that only affects this sentence.
+                            e.printStackTrace();
+                            return printer.printJointParses(null, inputLine.id);
+                        }
+                    }, commandLineOptions.getInputOrderScheduling() ? inputLine -> 0 : inputLine -> inputLine.length,
+                    output -> {
+                        try {
+                            // It's a bit faster to buffer output than use
+                            // System.out.println() directly.
+                            sysout.write(output);
+                            sysout.newLine();
+
+                            if (readingFromStdin) {
+                                sysout.flush();
                             }
+                        } catch (final IOException e) {
+                            throw new RuntimeException(e);
                         }
-                    });
+                    })) {
+
+                int id = 0;
+                while (inputLines.hasNext()) {
+                    // Read each sentence, either from STDIN or a parse.
+                    final String line = inputLines instanceof Scanner ? ((Scanner) inputLines).nextLine().trim()
+                            : inputLines.next();
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        id++;
+
+                        // Blocks until a slot is free.
+                        scheduler.submit(new InputLine(id, line));
+                    }
                 }
             }
-            executorService.shutdown();
-            executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
-            sysout.close();
 
             final DecimalFormat twoDP = new DecimalFormat("#.##");
 
             System.err.println("Sentences parsed: " + parsedSentences.get());
+            if (timedOutSentences.get() > 0) {
+                System.err.println("Sentences timed out: " + timedOutSentences.get());
+            }
+            if (parser2 instanceof BackoffSRLParser && ((BackoffSRLParser) parser2).getTimeouts() > 0) {
+                // Includes sentences that the pipeline model then parsed in the time left.
+                System.err.println("Sentences where the joint model timed out and backed off to the pipeline model: "
+                        + ((BackoffSRLParser) parser2).getTimeouts());
+            }
+            if (pipeline.getParser() instanceof ParserAdaptiveSupertagging) {
+                // Only counts sentences that got as far as the pipeline parser.
+                final int[] parsesAtLevel = ((ParserAdaptiveSupertagging) pipeline.getParser()).getParsesAtLevel();
+                final List<Double> beams = commandLineOptions.getAdaptiveSupertaggerBeams();
+                for (int level = 0; level < beams.size(); level++) {
+                    System.err.println("Parsed with supertagger beam " + beams.get(level) + ": "
+                            + parsesAtLevel[level]);
+                }
+                System.err.println("Not parsed with any supertagger beam: " + parsesAtLevel[beams.size()]);
+            }
             System.err.println("Speed: "
                     + twoDP.format(1000.0 * parsedSentences.get() / timer.elapsed(TimeUnit.MILLISECONDS))
                     + " sentences per second");
@@ -247,9 +332,36 @@ public class EasySRL {
         final LabelClassifier classifier = labelClassifier.exists() && outputDependencies ? Util
                 .deserialize(labelClassifier) : CCGBankEvaluation.dummyLabelClassifier;
 
-        return new PipelineSRLParser(EasySRL.makeParser(folder.getAbsolutePath(), supertaggerBeam,
-                ParsingAlgorithm.ASTAR, 100000, false, Optional.empty(), commandLineOptions.getNbest(),
-                commandLineOptions.getMaxLength()), classifier, posTagger);
+        final ParsingAlgorithm algorithm = ParsingAlgorithm
+                .valueOf(commandLineOptions.getParsingAlgorithm().toUpperCase());
+        final int maxChartSize = algorithm == ParsingAlgorithm.ASTAR ? 100000 : 400000;
+        // Options for the supertag-factored model's parser, which aren't in the arguments to makeParser().
+        final List<String> parserArguments = new ArrayList<>(Arrays.asList("--beamThreshold", ""
+                + commandLineOptions.getBeamThreshold()));
+        if (commandLineOptions.getLazyNbest()) {
+            parserArguments.add("--lazyNbest");
+        }
+        if (commandLineOptions.getParallelChart()) {
+            parserArguments.add("--parallelChart");
+        }
+
+        final List<Double> adaptiveBeams = commandLineOptions.getAdaptiveSupertaggerBeams();
+        final Parser parser;
+        if (adaptiveBeams.isEmpty()) {
+            parser = EasySRL.makeParser(folder.getAbsolutePath(), supertaggerBeam, algorithm, maxChartSize, false,
+                    Optional.empty(), commandLineOptions.getNbest(), commandLineOptions.getMaxLength(), true,
+                    parserArguments);
+        } else {
+            // The adaptive parser runs the supertagger, so the parser doesn't need its own.
+            final File cutoffsFile = new File(folder, "cutoffs");
+            final CutoffsDictionaryInterface cutoffs = cutoffsFile.exists() ? Util.deserialize(cutoffsFile) : null;
+            parser = new ParserAdaptiveSupertagging(EasySRL.makeParser(folder.getAbsolutePath(), supertaggerBeam,
+                    algorithm, maxChartSize, false, Optional.empty(), commandLineOptions.getNbest(),
+                    commandLineOptions.getMaxLength(), false, parserArguments), Tagger.make(folder, Math.min(
+                    supertaggerBeam, adaptiveBeams.get(adaptiveBeams.size() - 1)), 50, cutoffs), adaptiveBeams);
+        }
+
+        return new PipelineSRLParser(parser, classifier, posTagger);
     }
 
     public static Parser makeParser(final File modelFolder, final Optional<Double> supertaggerWeight)
@@ -286,11 +398,25 @@ public class EasySRL {
             final ParsingAlgorithm parsingAlgorithm, final int maxChartSize, final boolean joint,
             final Optional<Double> supertaggerWeight, final int nbest, final int maxLength,
             final boolean loadSupertagger) throws IOException {
+        return makeParser(modelFolder, supertaggerBeam, parsingAlgorithm, maxChartSize, joint, supertaggerWeight, nbest,
+                maxLength, loadSupertagger, Collections.emptyList());
+    }
+
+    /**
+     * @param extraArguments
+     *            Any other command line options for the parser, e.g. "--lazyNbest".
+     */
+    public static Parser makeParser(final String modelFolder, final double supertaggerBeam,
+            final ParsingAlgorithm parsingAlgorithm, final int maxChartSize, final boolean joint,
+            final Optional<Double> supertaggerWeight, final int nbest, final int maxLength,
+            final boolean loadSupertagger, final List<String> extraArguments) throws IOException {
         CommandLineArguments commandLineOptions;
         try {
+            final List<String> args = new ArrayList<>(Arrays.asList("-m", modelFolder, "--supertaggerbeam", ""
+                    + supertaggerBeam, "-a", parsingAlgorithm.toString(), "--nbest", "" + nbest, "-l", "" + maxLength));
+            args.addAll(extraArguments);
             commandLineOptions = CliFactory.parseArguments(CommandLineArguments.class,
-                    new String[]{"-m", modelFolder, "--supertaggerbeam", "" + supertaggerBeam, "-a",
-                        parsingAlgorithm.toString(), "--nbest", "" + nbest, "-l", "" + maxLength});
+                    args.toArray(new String[args.size()]));
 
         } catch (final ArgumentValidationException e) {
             throw new RuntimeException(e);
@@ -309,15 +435,18 @@ public class EasySRL {
 
         final Parser parser;
         final int nBest = commandLineOptions.getNbest();
+        final ForkJoinPool pool = commandLineOptions.getParallelChart() ? ForkJoinPool.commonPool() : null;
         if (algorithm == ParsingAlgorithm.CKY) {
             parser = new ParserCKY(modelFactory, commandLineOptions.getMaxLength(), nBest,
-                    commandLineOptions.getRootCategories(), modelFolder, maxChartSize);
+                    commandLineOptions.getRootCategories(), modelFolder, maxChartSize, pool);
         } else if (algorithm == ParsingAlgorithm.BEAM) {
             parser = new ParserBeamSearch(modelFactory, commandLineOptions.getMaxLength(), nBest,
-                    commandLineOptions.getRootCategories(), modelFolder, maxChartSize);
+                    commandLineOptions.getRootCategories(), modelFolder, maxChartSize, pool,
+                    commandLineOptions.getBeamThreshold());
         } else {
             parser = new ParserAStar(modelFactory, commandLineOptions.getMaxLength(), nBest,
-                    commandLineOptions.getRootCategories(), modelFolder, maxChartSize);
+                    commandLineOptions.getRootCategories(), modelFolder, maxChartSize, true,
+                    commandLineOptions.getPartialParses(), commandLineOptions.getLazyNbest());
         }
 
         return parser;
@@ -340,19 +469,23 @@ public class EasySRL {
         Collection<Category> lexicalCategories = TaggerEmbeddings.loadCategories(new File(modelFolder, "categories"));
 
         if (joint) {
-            final Map<FeatureKey, Integer> keyToIndex = Util.deserialize(new File(modelFolder, "featureToIndex"));
-            final double[] weights = Util.deserialize(new File(modelFolder, "weights"));
-            if (supertaggerWeight.isPresent()) {
-                weights[0] = supertaggerWeight.get();
-            }
-            if (taggerIn == null) {
-                modelFactory = new SRLFactoredModelFactory(weights,
-                    Util.<FeatureSet>deserialize(new File(modelFolder, "features")).setSupertaggingFeature(
-                    new File(modelFolder, "/pipeline"), commandLineOptions.getSupertaggerbeam()),
-                    lexicalCategories, cutoffs, keyToIndex);
+            final FeatureSet featureSet = taggerIn == null ? Util.<FeatureSet>deserialize(
+                    new File(modelFolder, "features")).setSupertaggingFeature(new File(modelFolder, "/pipeline"),
+                    commandLineOptions.getSupertaggerbeam())
+                    : Util.<FeatureSet>deserialize(new File(modelFolder, "features")).setSupertaggingFeature(taggerIn);
+            final File compiledWeights = new File(modelFolder, FeatureWeights.COMPILED_FILE);
+            if (compiledWeights.exists()) {
+                // Memory-mapped, which is much faster than deserializing featureToIndex.
+                final FeatureWeights featureWeights = FeatureWeights.load(compiledWeights);
+                modelFactory = new SRLFactoredModelFactory(featureWeights, supertaggerWeight.orElse(featureWeights
+                        .get(featureSet.lexicalCategoryFeatures.getDefault())), featureSet, lexicalCategories, cutoffs);
             } else {
-                modelFactory = new SRLFactoredModelFactory(weights,
-                    Util.<FeatureSet>deserialize(new File(modelFolder, "features")).setSupertaggingFeature(taggerIn), lexicalCategories, cutoffs, keyToIndex);
+                final Map<FeatureKey, Integer> keyToIndex = Util.deserialize(new File(modelFolder, "featureToIndex"));
+                final double[] weights = Util.deserialize(new File(modelFolder, "weights"));
+                if (supertaggerWeight.isPresent()) {
+                    weights[0] = supertaggerWeight.get();
+                }
+                modelFactory = new SRLFactoredModelFactory(weights, featureSet, lexicalCategories, cutoffs, keyToIndex);
             }
 
         } else {
@@ -171,6 +171,12 @@ public abstract class InputReader {
 
 		private final List<Category> goldCategories;
 		private final List<List<ScoredCategory>> inputSupertags;
+		/**
+		 * Supertagger scores for every category, for each word, and the model that computed them. They are kept so that
+		 * parsers which back off to each other only run the supertagger once. See Tagger.tag(InputToParser).
+		 */
+		private Object supertagScoresModel;
+		private double[] supertagScores;
 
 		public int length() {
 			return words.size();
@@ -187,6 +193,18 @@ public abstract class InputReader {
 			return inputSupertags;
 		}
 
+		/**
+		 * Returns the supertagger scores stored by the given model, or null if there are none.
+		 */
+		public double[] getSupertagScores(final Object model) {
+			return model.equals(supertagScoresModel) ? supertagScores : null;
+		}
+
+		public void setSupertagScores(final Object model, final double[] scores) {
+			this.supertagScoresModel = model;
+			this.supertagScores = scores;
+		}
+
 		public boolean haveGoldCategories() {
 			return getGoldCategories() != null;
 		}
@@ -2,11 +2,8 @@ package edu.uw.easysrl.semantics;
 
 import java.io.Serializable;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
-
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import edu.uw.easysrl.syntax.grammar.Category;
 import edu.uw.easysrl.util.Util;
@@ -19,13 +16,13 @@ public abstract class SemanticType implements Serializable {
 	 *
 	 */
 	private static final long serialVersionUID = 1L;
-	private final static Table<SemanticType, SemanticType, SemanticType> cache = HashBasedTable.create();
+	private final static ConcurrentMap<SemanticType, ConcurrentMap<SemanticType, SemanticType>> cache = new ConcurrentHashMap<>();
 	public final static SemanticType E = new AtomicSemanticType("E");
 	public final static SemanticType T = new AtomicSemanticType("T");
 	public static final SemanticType EtoT = make(E, T);
 	public final static SemanticType Ev = new AtomicSemanticType("Ev");
 	public static final SemanticType EventToT = make(Ev, T);
-	private final static Map<Category, SemanticType> categoryToTypeCache = new HashMap<>();
+	private final static ConcurrentMap<Category, SemanticType> categoryToTypeCache = new ConcurrentHashMap<>();
 
 	static class AtomicSemanticType extends SemanticType {
 		private static final long serialVersionUID = 1L;
@@ -141,17 +138,29 @@ public abstract class SemanticType implements Serializable {
 				final Category right = c.getRight();
 				result = make(makeFromCategory(right), makeFromCategory(left));
 			}
-			categoryToTypeCache.put(c, result);
+			final SemanticType existing = categoryToTypeCache.putIfAbsent(c, result);
+			if (existing != null) {
+				result = existing;
+			}
 		}
 
 		return result;
 	}
 
 	public static SemanticType make(final SemanticType from, final SemanticType to) {
-		SemanticType result = cache.get(from, to);
+		ConcurrentMap<SemanticType, SemanticType> toToType = cache.get(from);
+		if (toToType == null) {
+			cache.putIfAbsent(from, new ConcurrentHashMap<>());
+			toToType = cache.get(from);
+		}
+
+		SemanticType result = toToType.get(to);
 		if (result == null) {
 			result = new ComplexSemanticType(from, to);
-			cache.put(from, to, result);
+			final SemanticType existing = toToType.putIfAbsent(to, result);
+			if (existing != null) {
+				result = existing;
+			}
 		}
 		return result;
 	}
@@ -0,0 +1,74 @@
+package edu.uw.easysrl.syntax.grammar;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.carrotsearch.hppc.LongObjectHashMap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Table.Cell;
+
+import edu.uw.easysrl.syntax.grammar.Combinator.RuleProduction;
+
+/**
+ * The binary rule productions for every pair of categories allowed by the {@link SeenRules}, computed when the model
+ * is loaded and looked up by category IDs. The table isn't modified after construction, so it can be shared between
+ * parser threads.
+ *
+ * If the model doesn't have a seenRules file, any pair of categories may combine, and rules are computed (and cached)
+ * the first time a pair is looked up.
+ */
+public class BinaryRuleTable {
+	private final LongObjectHashMap<List<RuleProduction>> table;
+	private final Collection<Combinator> combinators;
+	private final boolean allowUnseenRules;
+	private final ConcurrentMap<Long, List<RuleProduction>> unseenRuleCache = new ConcurrentHashMap<>();
+
+	public BinaryRuleTable(final SeenRules seenRules, final Collection<Combinator> combinators) {
+		this.combinators = combinators;
+		this.allowUnseenRules = !seenRules.isFiltering();
+		this.table = new LongObjectHashMap<>(seenRules.ruleTable().size());
+		for (final Cell<Category, Category, List<RuleProduction>> entry : seenRules.ruleTable().cellSet()) {
+			final List<RuleProduction> rules = Combinator.getRules(entry.getRowKey(), entry.getColumnKey(),
+					combinators);
+			if (!rules.isEmpty()) {
+				table.put(key(entry.getRowKey(), entry.getColumnKey()), ImmutableList.copyOf(rules));
+			}
+		}
+	}
+
+	private static long key(final Category left, final Category right) {
+		return ((long) left.getID() << 32) | right.getID();
+	}
+
+	/**
+	 * Returns the binary rule productions between these two categories. The list is empty if the categories can't
+	 * combine, or if the combination was never seen in the training data.
+	 */
+	public List<RuleProduction> getRules(final Category left, final Category right) {
+		final long key = key(left, right);
+		final List<RuleProduction> result = table.get(key);
+		if (result != null) {
+			return result;
+		} else if (!allowUnseenRules) {
+			return Collections.emptyList();
+		}
+
+		List<RuleProduction> rules = unseenRuleCache.get(key);
+		if (rules == null) {
+			rules = ImmutableList.copyOf(Combinator.getRules(left, right, combinators));
+			unseenRuleCache.putIfAbsent(key, rules);
+		}
+
+		return rules;
+	}
+
+	/**
+	 * Number of pairs of categories that can combine.
+	 */
+	public int size() {
+		return table.size() + unseenRuleCache.size();
+	}
+}
@@ -2,10 +2,10 @@ package edu.uw.easysrl.syntax.grammar;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.collect.ImmutableSet;
@@ -17,11 +17,19 @@ public abstract class Category implements Serializable, Comparable<Category> {
 	private static final long serialVersionUID = -9163900631701144973L;
 	private final String asString;
 	private final int id;
+	/**
+	 * Lazily set to this category with [nb] features removed. Computing it is idempotent, so the race is benign.
+	 */
+	private transient Category withoutNB;
 	private final static String WILDCARD_FEATURE = "X";
 	private final static Set<String> bracketAndQuoteCategories = ImmutableSet.of("LRB", "RRB", "LQU", "RQU");
 	private final static AtomicInteger numCats = new AtomicInteger();
 
-	private final static Map<String, Category> cache = new HashMap<>();
+	/**
+	 * Maps strings to canonical Category objects. Parser threads create categories concurrently (e.g. as the results
+	 * of combinators), so lookups need to be safe without locking.
+	 */
+	private final static ConcurrentMap<String, Category> cache = new ConcurrentHashMap<>();
 
 	public static final Category COMMA = valueOf(",");
 	public static final Category CONJ = valueOf("conj");
@@ -96,7 +104,6 @@ public abstract class Category implements Serializable, Comparable<Category> {
 	public static Category valueOf(final String cat) {
 
 		// Tries to guarantee that equal categories are identical objects.
-		// TODO simplify this
 		Category result = cache.get(cat);
 		if (result == null) {
 
@@ -106,32 +113,28 @@ public abstract class Category implements Serializable, Comparable<Category> {
 			result = cache.get(name);
 
 			if (result == null) {
-				result = Category.valueOfUncached(name);
-
-				synchronized (cache) {
-					final Category existing = cache.get(result.asString);
-					if (existing != null) {
-						result = existing;
-					} else {
-						cache.put(result.asString, result);
-					}
-				}
+				result = intern(Category.valueOfUncached(name));
 
-				if (name != cat) {
-					synchronized (cache) {
-						cache.put(name, result);
-					}
+				if (!name.equals(result.asString)) {
+					cache.putIfAbsent(name, result);
 				}
 			}
 
-			synchronized (cache) {
-				cache.put(cat, result);
-			}
+			cache.putIfAbsent(cat, result);
 		}
 
 		return result;
 	}
 
+	/**
+	 * Returns the canonical instance of this category. If two threads build the same category at the same time, they
+	 * both get whichever one was added to the cache first.
+	 */
+	private static Category intern(final Category category) {
+		final Category existing = cache.putIfAbsent(category.asString, category);
+		return existing == null ? category : existing;
+	}
+
 	private static String dropMarkup(final String withMarkUp) {
 		String withoutMarkup = withMarkUp.replaceAll("_[0-9]+", "");
 		withoutMarkup = withoutMarkup.replaceAll(":B", "");
@@ -645,6 +648,20 @@ public abstract class Category implements Serializable, Comparable<Category> {
 		return this;
 	}
 
+	/**
+	 * Returns this category with any [nb] features removed. The [nb] feature isn't helpful for deciding which rules
+	 * apply, so Combinators ignore it. The result is cached, to avoid re-parsing category strings in the parser.
+	 */
+	public Category withoutNB() {
+		Category result = withoutNB;
+		if (result == null) {
+			result = asString.contains("[nb]") ? valueOf(asString.replace("[nb]", "")) : this;
+			withoutNB = result;
+		}
+
+		return result;
+	}
+
 	@Override
 	/**
 	 * Implementing Comparable for use in TreeMaps.
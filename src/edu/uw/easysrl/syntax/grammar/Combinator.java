@@ -66,17 +66,19 @@ public abstract class Combinator {
 
 	public static class RuleProduction {
 		private RuleProduction(final RuleType ruleType, final Category result, final boolean headIsLeft,
-				final Combinator combinator) {
+				final Combinator combinator, final boolean resultIsSameAsRightCategory) {
 			this.ruleType = ruleType;
 			this.category = result;
 			this.headIsLeft = headIsLeft;
 			this.combinator = combinator;
+			this.resultIsSameAsRightCategory = resultIsSameAsRightCategory;
 		}
 
 		private final RuleType ruleType;
 		private final Category category;
 		private final boolean headIsLeft;
 		private final Combinator combinator;
+		private final boolean resultIsSameAsRightCategory;
 
 		public RuleType getRuleType() {
 			return ruleType;
@@ -93,6 +95,13 @@ public abstract class Combinator {
 		public Combinator getCombinator() {
 			return combinator;
 		}
+
+		/**
+		 * True if the result is the same as the right category, which some normal-form constraints check for.
+		 */
+		public boolean isResultSameAsRightCategory() {
+			return resultIsSameAsRightCategory;
+		}
 	}
 
 	public abstract boolean headIsLeft(Category left, Category right);
@@ -153,14 +162,19 @@ public abstract class Combinator {
 	 * Returns a set of rules that can be applied to a pair of categories.
 	 */
 	public static List<RuleProduction> getRules(Category left, Category right, final Collection<Combinator> rules) {
+		// Compared with the results for normal-form constraints, which use the original category.
+		final Category rightCategory = right;
+
 		// [nb] feature is not helpful.
-		left = Category.valueOf(left.toString().replace("[nb]", ""));
-		right = Category.valueOf(right.toString().replace("[nb]", ""));
+		left = left.withoutNB();
+		right = right.withoutNB();
 
 		final List<RuleProduction> result = new ArrayList<>(2);
 		for (final Combinator c : rules) {
 			if (c.canApply(left, right)) {
-				result.add(new RuleProduction(c.ruleType, c.apply(left, right), c.headIsLeft(left, right), c));
+				final Category resultCategory = c.apply(left, right);
+				result.add(new RuleProduction(c.ruleType, resultCategory, c.headIsLeft(left, right), c, resultCategory
+						.equals(rightCategory)));
 			}
 		}
 
@@ -1,13 +1,67 @@
 package edu.uw.easysrl.syntax.grammar;
 
 import edu.uw.easysrl.syntax.grammar.Combinator.RuleClass;
+import edu.uw.easysrl.syntax.grammar.Combinator.RuleProduction;
 import edu.uw.easysrl.syntax.grammar.Combinator.RuleType;
 
+/**
+ * Normal-form constraints on binary rules. They only depend on the rule classes of the children, the rule type, whether
+ * the result is the same as the right child's category, and whether the left child starts the sentence. So they're
+ * computed once for every combination, and looked up in a table.
+ */
 public class NormalForm {
 
+	private final static int NUMBER_OF_RULE_CLASSES = RuleClass.values().length;
+	private final static int NUMBER_OF_RULE_TYPES = RuleType.values().length;
+
+	/**
+	 * Indexed by index().
+	 */
+	private final static boolean[] IS_OK = makeTable();
+
+	private static boolean[] makeTable() {
+		final boolean[] result = new boolean[4 * NUMBER_OF_RULE_CLASSES * NUMBER_OF_RULE_CLASSES * NUMBER_OF_RULE_TYPES];
+		for (final RuleClass leftRuleClass : RuleClass.values()) {
+			for (final RuleClass rightRuleClass : RuleClass.values()) {
+				for (final RuleType ruleType : RuleType.values()) {
+					for (final boolean resultIsRightCategory : new boolean[] { false, true }) {
+						for (final boolean isPrefixOfSentence : new boolean[] { false, true }) {
+							result[index(leftRuleClass, rightRuleClass, ruleType, resultIsRightCategory,
+									isPrefixOfSentence)] = computeIsOk(leftRuleClass, rightRuleClass, ruleType,
+									resultIsRightCategory, isPrefixOfSentence);
+						}
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
+	private static int index(final RuleClass leftRuleClass, final RuleClass rightRuleClass, final RuleType ruleType,
+			final boolean resultIsRightCategory, final boolean isPrefixOfSentence) {
+		return (((leftRuleClass.ordinal() * NUMBER_OF_RULE_CLASSES + rightRuleClass.ordinal()) * NUMBER_OF_RULE_TYPES
+				+ ruleType.ordinal()) * 2 + (resultIsRightCategory ? 1 : 0)) * 2 + (isPrefixOfSentence ? 1 : 0);
+	}
+
+	/**
+	 * Checks if the normal-form constraints allow a rule production. The production must come from
+	 * {@link Combinator#getRules} for the children's categories.
+	 */
+	public static boolean isOk(final RuleClass leftRuleClass, final RuleClass rightRuleClass,
+			final RuleProduction production, final boolean isPrefixOfSentence) {
+		return IS_OK[index(leftRuleClass, rightRuleClass, production.getRuleType(),
+				production.isResultSameAsRightCategory(), isPrefixOfSentence)];
+	}
+
 	public static boolean isOk(final RuleClass leftRuleClass, final RuleClass rightRuleClass, final RuleType ruleType,
 			@SuppressWarnings("unused") final Category leftCategory, final Category rightCategory,
 			final Category result, final boolean isPrefixOfSentence) {
+		return IS_OK[index(leftRuleClass, rightRuleClass, ruleType, rightCategory.equals(result), isPrefixOfSentence)];
+	}
+
+	private static boolean computeIsOk(final RuleClass leftRuleClass, final RuleClass rightRuleClass,
+			final RuleType ruleType, final boolean resultIsRightCategory, final boolean isPrefixOfSentence) {
 		if ((leftRuleClass == RuleClass.FC || leftRuleClass == RuleClass.GFC)
 				&& (ruleType == RuleType.FA || ruleType == RuleType.FC || ruleType == RuleType.GFC)) {
 			// Eisner normal form constraint.
@@ -107,13 +161,13 @@ public class NormalForm {
 		// Scope of modifiers. Technically these are semantically distinct, but our representations aren't smart enough
 		// to notice.
 
-		if (rightRuleClass == RuleClass.B_MOD && ruleType == RuleType.FA && rightCategory.equals(result)) {
+		if (rightRuleClass == RuleClass.B_MOD && ruleType == RuleType.FA && resultIsRightCategory) {
 			// This version gives rightward modifiers (e.g. relative clauses) scope over leftward modifiers (e.g.
 			// adjectives).
 			return false;
 		}
 
-		if (rightRuleClass == RuleClass.FC && ruleType == RuleType.FA && rightCategory.equals(result)) {
+		if (rightRuleClass == RuleClass.FC && ruleType == RuleType.FA && resultIsRightCategory) {
 			// Rules out: (very (big red)), forcing ((very big) red)
 			return false;
 		}
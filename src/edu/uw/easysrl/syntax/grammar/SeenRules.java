@@ -67,6 +67,13 @@ public class SeenRules {
 				.getID()]);
 	}
 
+	/**
+	 * False if there was no seenRules file, in which case all CCG-legal rules are allowed.
+	 */
+	public boolean isFiltering() {
+		return seen != null;
+	}
+
 	private Category getCategory(String s) {
 		// Convert CCGbank type-raising S/(S\NP) to S[X]/(S[X]\NP)
 		final Category c = Category.valueOf(s);
@@ -21,6 +21,7 @@ import edu.uw.easysrl.syntax.grammar.Combinator.RuleClass;
 import edu.uw.easysrl.syntax.grammar.Combinator.RuleType;
 import edu.uw.easysrl.syntax.parser.AbstractParser.UnaryRule;
 import edu.uw.easysrl.syntax.parser.SRLParser.CCGandSRLparse;
+import edu.uw.easysrl.util.Hashing;
 
 public abstract class SyntaxTreeNode implements Serializable {
 
@@ -34,6 +35,15 @@ public abstract class SyntaxTreeNode implements Serializable {
 	private final List<UnlabelledDependency> resolvedUnlabelledDependencies;
 	private final int length;
 	private final Logic semantics;
+	/**
+	 * Cache for getDependencyHash(), which is only valid once dependencyHashComputed is set. 0 is a real hash, e.g. for
+	 * leaves, so it can't mean "not computed". Category IDs aren't stable across JVMs, so it isn't serialized.
+	 */
+	private transient long dependencyHash;
+	/**
+	 * Set after dependencyHash is written. It's volatile, so other threads that see it set also see the hash.
+	 */
+	private transient volatile boolean dependencyHashComputed;
 
 	public abstract SyntaxTreeNodeLeaf getHead();
 
@@ -471,6 +481,40 @@ public abstract class SyntaxTreeNode implements Serializable {
 		return resolvedUnlabelledDependencies;
 	}
 
+	/**
+	 * Hash of the resolved dependencies in this parse, which is the same for parses with the same dependencies (Ng and
+	 * Curran, 2012). Each dependency's hash is computed from its category, argument number, head and argument, and the
+	 * hashes are added up, so the order they were resolved in doesn't matter. The result is cached, so it's only
+	 * computed once for nodes shared by several parses.
+	 */
+	public final long getDependencyHash() {
+		if (dependencyHashComputed) {
+			return dependencyHash;
+		}
+
+		long result = 0;
+		if (resolvedUnlabelledDependencies != null) {
+			for (final UnlabelledDependency dep : resolvedUnlabelledDependencies) {
+				for (final int arg : dep.getArguments()) {
+					if (dep.getHead() != arg) {
+						long hash = Hashing.mix(0L, dep.getCategory().getID());
+						hash = Hashing.mix(hash, dep.getArgNumber());
+						hash = Hashing.mix(hash, dep.getHead());
+						result += Hashing.finish(Hashing.mix(hash, arg));
+					}
+				}
+			}
+		}
+
+		for (final SyntaxTreeNode child : getChildren()) {
+			result += child.getDependencyHash();
+		}
+		dependencyHash = result;
+		dependencyHashComputed = true;
+
+		return result;
+	}
+
 	public static class SyntaxTreeNodeLabelling extends SyntaxTreeNode {
 
 		/**
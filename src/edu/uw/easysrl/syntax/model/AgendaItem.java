@@ -1,18 +1,22 @@
 package edu.uw.easysrl.syntax.model;
 
-import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.Set;
+import java.util.function.Supplier;
 
 import edu.uw.easysrl.dependencies.DependencyStructure;
 import edu.uw.easysrl.dependencies.UnlabelledDependency;
 import edu.uw.easysrl.syntax.grammar.Category;
 import edu.uw.easysrl.syntax.grammar.Combinator.RuleClass;
 import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode;
+import edu.uw.easysrl.util.Hashing;
 
 public class AgendaItem implements Comparable<AgendaItem> {
-	final SyntaxTreeNode parse;
+	private SyntaxTreeNode parse;
+	/**
+	 * Builds the parse of a lazy item. Null once the parse has been built.
+	 */
+	private Supplier<SyntaxTreeNode> lazyParse;
 	private final double insideScore;
 	final double outsideScoreUpperbound;
 	private final double cost;
@@ -23,15 +27,29 @@ public class AgendaItem implements Comparable<AgendaItem> {
 
 	public AgendaItem(final SyntaxTreeNode node, final double insideScore, final double outsideScoreUpperbound,
 			final int startIndex, final int length, final boolean includeDeps) {
-		super();
+		this(insideScore, outsideScoreUpperbound, startIndex, length, includeDeps);
 		this.parse = node;
+	}
+
+	/**
+	 * Makes a lazy item, whose parse is only built when it's needed. Most items are never taken off the agenda, so
+	 * this saves building their nodes and dependency structures.
+	 */
+	public AgendaItem(final Supplier<SyntaxTreeNode> node, final double insideScore,
+			final double outsideScoreUpperbound, final int startIndex, final int length, final boolean includeDeps) {
+		this(insideScore, outsideScoreUpperbound, startIndex, length, includeDeps);
+		this.lazyParse = node;
+	}
+
+	private AgendaItem(final double insideScore, final double outsideScoreUpperbound, final int startIndex,
+			final int length, final boolean includeDeps) {
+		super();
 		this.insideScore = insideScore;
 		this.outsideScoreUpperbound = outsideScoreUpperbound;
 		this.cost = insideScore + outsideScoreUpperbound;
 		this.startOfSpan = startIndex;
 		this.spanLength = length;
 		this.includeDeps = includeDeps;
-		this.key = getEquivalenceClassKey2();
 	}
 
 	/**
@@ -47,6 +65,10 @@ public class AgendaItem implements Comparable<AgendaItem> {
 	}
 
 	public SyntaxTreeNode getParse() {
+		if (parse == null) {
+			parse = lazyParse.get();
+			lazyParse = null;
+		}
 		return parse;
 	}
 
@@ -68,9 +90,12 @@ public class AgendaItem implements Comparable<AgendaItem> {
 		return spanLength;
 	}
 
-	private final Object key;
+	private Object key;
 
 	public Object getEquivalenceClassKey() {
+		if (key == null) {
+			key = getEquivalenceClassKey2();
+		}
 		return key;
 	}
 
@@ -80,6 +105,7 @@ public class AgendaItem implements Comparable<AgendaItem> {
 		// Same unused SRL labels
 		// Same depenency structure
 		// Same rule
+		final SyntaxTreeNode parse = getParse();
 		final RuleClass ruleClass = parse.getRuleClass();
 
 		return includeDeps ? new KeyWithDeps(parse.getCategory(), ruleClass, parse.getDependencyStructure(),
@@ -89,11 +115,17 @@ public class AgendaItem implements Comparable<AgendaItem> {
 				: parse.getCategory();
 	}
 
+	/**
+	 * Key for items with the same category, rule class, dependency structure and set of dependencies resolved at
+	 * the node. Keys are compared by a 64-bit hash, which is built from the parts without copying the dependencies
+	 * into a set. The parts themselves are only compared when the hashes are equal.
+	 */
 	private static class KeyWithDeps {
 		private final Category category;
 		private final RuleClass rule;
 		private final DependencyStructure deps;
-		private final Set<UnlabelledDependency> unlabelledDependencies;
+		private final List<UnlabelledDependency> unlabelledDependencies;
+		private final long hash;
 
 		public KeyWithDeps(final Category category, final RuleClass ruleClass, final DependencyStructure deps,
 				final List<UnlabelledDependency> unlabelledDependencies) {
@@ -101,23 +133,59 @@ public class AgendaItem implements Comparable<AgendaItem> {
 			this.category = category.withoutAnnotation();
 			this.rule = ruleClass;
 			this.deps = deps;
-			// Turning into a set to lose ordering.
-			this.unlabelledDependencies = new HashSet<>(unlabelledDependencies);
+			this.unlabelledDependencies = unlabelledDependencies;
+
+			final long setHash = hashOfSet(unlabelledDependencies);
+			long hash = Hashing.mix(0L, this.category.getID());
+			hash = Hashing.mix(hash, rule == null ? -1 : rule.ordinal());
+			hash = Hashing.mix(hash, Objects.hashCode(deps));
+			hash = Hashing.mix(hash, (int) setHash);
+			this.hash = Hashing.finish(Hashing.mix(hash, (int) (setHash >>> 32)));
+		}
+
+		/**
+		 * Sum of the hashes of the distinct dependencies, which doesn't depend on their order.
+		 */
+		private static long hashOfSet(final List<UnlabelledDependency> dependencies) {
+			long result = 0L;
+			for (int i = 0; i < dependencies.size(); i++) {
+				final UnlabelledDependency dependency = dependencies.get(i);
+				if (dependencies.indexOf(dependency) < i) {
+					// Repeated.
+					continue;
+				}
+
+				long hash = Hashing.mix(0L, dependency.getHead());
+				hash = Hashing.mix(hash, dependency.getArgNumber());
+				hash = Hashing.mix(hash, dependency.getCategory().getID());
+				hash = Hashing.mix(hash, Objects.hashCode(dependency.getPreposition()));
+				for (final int argument : dependency.getArguments()) {
+					hash = Hashing.mix(hash, argument);
+				}
+				result += Hashing.finish(hash);
+			}
+
+			return result;
+		}
+
+		/**
+		 * True if the lists contain the same dependencies, ignoring order and repeats.
+		 */
+		private static boolean sameSet(final List<UnlabelledDependency> list1, final List<UnlabelledDependency> list2) {
+			return list1.containsAll(list2) && list2.containsAll(list1);
 		}
 
 		@Override
 		public int hashCode() {
-			return Objects.hash(category, deps, rule, unlabelledDependencies);
-
+			return (int) (hash ^ (hash >>> 32));
 		}
 
 		@Override
 		public boolean equals(final Object obj) {
 			final AgendaItem.KeyWithDeps other = (AgendaItem.KeyWithDeps) obj;
-			return Objects.equals(category, other.category) && Objects.equals(deps, other.deps)
-					&& Objects.equals(rule, other.rule)
-					&& Objects.equals(unlabelledDependencies, other.unlabelledDependencies);
-
+			return hash == other.hash && category == other.category && rule == other.rule
+					&& Objects.equals(deps, other.deps)
+					&& sameSet(unlabelledDependencies, other.unlabelledDependencies);
 		}
 
 	}
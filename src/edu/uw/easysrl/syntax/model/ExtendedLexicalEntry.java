@@ -9,7 +9,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import com.carrotsearch.hppc.ObjectDoubleHashMap;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 
@@ -22,6 +21,7 @@ import edu.uw.easysrl.syntax.grammar.Preposition;
 import edu.uw.easysrl.syntax.model.feature.Feature.FeatureKey;
 import edu.uw.easysrl.syntax.model.feature.FeatureCache;
 import edu.uw.easysrl.syntax.model.feature.FeatureSet;
+import edu.uw.easysrl.syntax.model.feature.FeatureWeights;
 import edu.uw.easysrl.syntax.model.feature.PrepositionFeature;
 import edu.uw.easysrl.util.Util.Scored;
 
@@ -34,14 +34,14 @@ class ExtendedLexicalEntry {
 	private final List<InputWord> sentence;
 	private final Forest forest;
 	private final FeatureSet featureSet;
-	private final ObjectDoubleHashMap<FeatureKey> featureToScore;
+	private final FeatureWeights featureToScore;
 
 	private final double[] viterbiScoreConjunctiveCache;
 	private final double[] featureScoreCache;
 	private final FeatureCache featureCache;
 
 	ExtendedLexicalEntry(final FeatureSet featureSet, final int wordIndex, final List<InputWord> words,
-			final Forest forest, final ObjectDoubleHashMap<FeatureKey> featureToScore, final FeatureCache featureCache) {
+			final Forest forest, final FeatureWeights featureToScore, final FeatureCache featureCache) {
 		this.wordIndex = wordIndex;
 		this.sentence = words;
 
@@ -404,7 +404,7 @@ class ExtendedLexicalEntry {
 		}
 
 		abstract double getLogScore(List<InputWord> words, int wordIndex, FeatureSet featureSet,
-				ObjectDoubleHashMap<FeatureKey> featureToScore, FeatureCache featureCache);
+				FeatureWeights featureToScore, FeatureCache featureCache);
 
 		private final List<DisjunctiveNode> children;
 		private final int id;
@@ -437,7 +437,7 @@ class ExtendedLexicalEntry {
 
 		@Override
 		double getLogScore(final List<InputWord> words, final int wordIndex, final FeatureSet featureSet,
-				final ObjectDoubleHashMap<FeatureKey> featureToScore, final FeatureCache featureCache) {
+				final FeatureWeights featureToScore, final FeatureCache featureCache) {
 
 			return featureCache.getScore(wordIndex, category);
 
@@ -464,7 +464,7 @@ class ExtendedLexicalEntry {
 
 		@Override
 		double getLogScore(final List<InputWord> words, final int functorIndex, final FeatureSet featureSet,
-				final ObjectDoubleHashMap<FeatureKey> featureToScore, final FeatureCache featureCache) {
+				final FeatureWeights featureToScore, final FeatureCache featureCache) {
 
 			if (offset == 0) {
 				// null attachment
@@ -497,7 +497,7 @@ class ExtendedLexicalEntry {
 
 		@Override
 		double getLogScore(final List<InputWord> words, final int wordIndex, final FeatureSet featureSet,
-				final ObjectDoubleHashMap<FeatureKey> featureToScore, final FeatureCache featureCache) {
+				final FeatureWeights featureToScore, final FeatureCache featureCache) {
 
 			return featureCache.getScore(words, wordIndex, category, preposition, argumentNumber, label);
 		}
@@ -523,7 +523,7 @@ class ExtendedLexicalEntry {
 
 		@Override
 		double getLogScore(final List<InputWord> words, final int wordIndex, final FeatureSet featureSet,
-				final ObjectDoubleHashMap<FeatureKey> featureToScore, final FeatureCache featureCache) {
+				final FeatureWeights featureToScore, final FeatureCache featureCache) {
 			if (preposition == Preposition.NONE) {
 				return 0.0;
 			}
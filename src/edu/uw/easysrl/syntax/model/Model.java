@@ -2,7 +2,8 @@ package edu.uw.easysrl.syntax.model;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.function.Supplier;
 
 import edu.uw.easysrl.main.InputReader.InputToParser;
 import edu.uw.easysrl.main.InputReader.InputWord;
@@ -34,12 +35,36 @@ public abstract class Model {
 
 	public abstract double getUpperBoundForWord(int index);
 
-	public abstract void buildAgenda(PriorityQueue<AgendaItem> queue, List<InputWord> words);
+	public abstract void buildAgenda(Queue<AgendaItem> queue, List<InputWord> words);
 
 	public abstract AgendaItem combineNodes(AgendaItem leftChild, AgendaItem rightChild, SyntaxTreeNode node);
 
 	public abstract AgendaItem unary(AgendaItem child, SyntaxTreeNode result, UnaryRule rule);
 
+	/**
+	 * Like combineNodes(), but the node is only built if it's needed. Models which can score an item without its node
+	 * should override this to return a lazy AgendaItem.
+	 */
+	public AgendaItem combineNodes(final AgendaItem leftChild, final AgendaItem rightChild,
+			final Supplier<SyntaxTreeNode> node) {
+		return combineNodes(leftChild, rightChild, node.get());
+	}
+
+	/**
+	 * Like unary(), but the node is only built if it's needed.
+	 */
+	public AgendaItem unary(final AgendaItem child, final Supplier<SyntaxTreeNode> result, final UnaryRule rule) {
+		return unary(child, result.get(), rule);
+	}
+
+	/**
+	 * True if combineNodes() and unary() can be called from several threads at once, so that the cells of a chart can
+	 * be filled in parallel.
+	 */
+	public boolean isThreadSafe() {
+		return false;
+	}
+
 	public double getOutsideUpperBound(final int start, final int end) {
 		return outsideScoresUpperBound[start][end];
 	}
@@ -10,7 +10,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -188,7 +188,7 @@ public class OracleDependenciesModel extends Model {
 	}
 
 	@Override
-	public void buildAgenda(final PriorityQueue<AgendaItem> queue, final List<InputWord> words) {
+	public void buildAgenda(final Queue<AgendaItem> queue, final List<InputWord> words) {
 		int i = 0;
 		for (final InputWord w : words) {
 
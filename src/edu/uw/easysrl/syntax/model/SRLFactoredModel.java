@@ -4,9 +4,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
-
-import com.carrotsearch.hppc.ObjectDoubleHashMap;
+import java.util.Queue;
 
 import edu.uw.easysrl.dependencies.SRLFrame.SRLLabel;
 import edu.uw.easysrl.dependencies.UnlabelledDependency;
@@ -25,6 +23,7 @@ import edu.uw.easysrl.syntax.model.feature.Feature.UnaryRuleFeature;
 import edu.uw.easysrl.syntax.model.feature.FeatureCache;
 import edu.uw.easysrl.syntax.model.feature.FeatureCache.SlotFeatureCache;
 import edu.uw.easysrl.syntax.model.feature.FeatureSet;
+import edu.uw.easysrl.syntax.model.feature.FeatureWeights;
 import edu.uw.easysrl.syntax.parser.AbstractParser.UnaryRule;
 import edu.uw.easysrl.util.Util.Scored;
 
@@ -33,7 +32,7 @@ public class SRLFactoredModel extends Model {
 	private final Collection<UnaryRuleFeature> unaryRuleFeatures;
 
 	private SRLFactoredModel(final List<ExtendedLexicalEntry> forests,
-			final Collection<UnaryRuleFeature> unaryRuleFeatures, final ObjectDoubleHashMap<FeatureKey> featureToScore,
+			final Collection<UnaryRuleFeature> unaryRuleFeatures, final FeatureWeights featureToScore,
 			final Collection<BinaryFeature> binaryFeatures, final Collection<RootCategoryFeature> rootFeatures,
 			final List<InputWord> sentence) {
 		super(forests.size());
@@ -62,7 +61,7 @@ public class SRLFactoredModel extends Model {
 	}
 
 	@Override
-	public void buildAgenda(final PriorityQueue<AgendaItem> queue, final List<InputWord> words) {
+	public void buildAgenda(final Queue<AgendaItem> queue, final List<InputWord> words) {
 
 		for (int i = 0; i < words.size(); i++) {
 			final InputWord word = words.get(i);
@@ -89,7 +88,7 @@ public class SRLFactoredModel extends Model {
 
 	private final double globalUpperBound;
 	private final List<Double> upperBoundsForWord;
-	private final ObjectDoubleHashMap<FeatureKey> featureToScore;
+	private final FeatureWeights featureToScore;
 	private final Collection<BinaryFeature> binaryFeatures;
 	private final Collection<RootCategoryFeature> rootFeatures;
 	private final List<InputWord> sentence;
@@ -169,7 +168,7 @@ public class SRLFactoredModel extends Model {
 		AgendaItem agendaItem = new AgendaItem(result, insideScore, child.outsideScoreUpperbound, child.startOfSpan,
 				child.spanLength, true);
 
-		agendaItem = labelDependencies(agendaItem, agendaItem.parse);
+		agendaItem = labelDependencies(agendaItem, agendaItem.getParse());
 
 		return agendaItem;
 	}
@@ -183,26 +182,29 @@ public class SRLFactoredModel extends Model {
 		private final boolean usingSlotFeatures;
 		private final SlotFeatureCache slotFeatureCache;
 		private final double supertaggingFeatureScore;
-		private final ObjectDoubleHashMap<FeatureKey> featureToScore;
+		private final FeatureWeights featureToScore;
 
 		public SRLFactoredModelFactory(final double[] weights, final FeatureSet featureSet,
 				final Collection<Category> lexicalCategories, final CutoffsDictionaryInterface cutoffs,
 				final Map<FeatureKey, Integer> featureToIndex) {
+			this(FeatureWeights.make(featureToIndex, weights), weights[featureToIndex.get(featureSet.lexicalCategoryFeatures
+					.getDefault())], featureSet, lexicalCategories, cutoffs);
+		}
+
+		/**
+		 * @param supertaggingFeatureScore
+		 *            Weight of the supertagger's scores, which overrides the weight in featureToScore.
+		 */
+		public SRLFactoredModelFactory(final FeatureWeights featureToScore, final double supertaggingFeatureScore,
+				final FeatureSet featureSet, final Collection<Category> lexicalCategories,
+				final CutoffsDictionaryInterface cutoffs) {
 			this.featureSet = featureSet;
 			this.cutoffsDictionary = cutoffs;
 			this.lexicalCategories = lexicalCategories;
 			this.usingDependencyFeatures = !featureSet.dependencyFeatures.isEmpty();
 			this.usingSlotFeatures = !featureSet.argumentSlotFeatures.isEmpty();
-
-			featureToScore = new ObjectDoubleHashMap<>(featureToIndex.size(), 0.1);
-
-			for (final java.util.Map.Entry<FeatureKey, Integer> entry : featureToIndex.entrySet()) {
-				featureToScore.put(entry.getKey(), weights[entry.getValue()]);
-			}
-
-			final FeatureKey supertaggingFeatureKey = featureSet.lexicalCategoryFeatures.getDefault();
-			supertaggingFeatureScore = weights[featureToIndex.get(supertaggingFeatureKey)];
-			featureToScore.put(supertaggingFeatureKey, supertaggingFeatureScore);
+			this.featureToScore = featureToScore;
+			this.supertaggingFeatureScore = supertaggingFeatureScore;
 
 			this.slotFeatureCache = new SlotFeatureCache(featureSet, featureToScore);
 
@@ -211,8 +213,9 @@ public class SRLFactoredModel extends Model {
 		@Override
 		public Model make(final InputToParser input) {
 			final List<InputWord> sentence = input.getInputWords();
-			final FeatureCache featureCache = new FeatureCache(sentence, featureToScore, featureSet,
-					supertaggingFeatureScore, slotFeatureCache);
+			final FeatureCache featureCache = new FeatureCache(sentence,
+					featureSet.lexicalCategoryFeatures.getCategoryScores(input, supertaggingFeatureScore), featureToScore,
+					featureSet, slotFeatureCache);
 
 			final List<ExtendedLexicalEntry> forests = new ArrayList<>(sentence.size());
 			int wordIndex = 0;
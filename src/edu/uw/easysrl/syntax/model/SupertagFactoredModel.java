@@ -4,7 +4,8 @@ import com.google.common.base.Preconditions;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.function.Supplier;
 
 import edu.uw.easysrl.main.InputReader.InputToParser;
 import edu.uw.easysrl.main.InputReader.InputWord;
@@ -28,7 +29,7 @@ public class SupertagFactoredModel extends Model {
 	}
 
 	@Override
-	public void buildAgenda(final PriorityQueue<AgendaItem> agenda, final List<InputWord> words) {
+	public void buildAgenda(final Queue<AgendaItem> agenda, final List<InputWord> words) {
 		for (int i = 0; i < words.size(); i++) {
 			final InputWord word = words.get(i);
 			for (final ScoredCategory cat : tagsForWords.get(i)) {
@@ -40,8 +41,19 @@ public class SupertagFactoredModel extends Model {
 
 	@Override
 	public AgendaItem combineNodes(final AgendaItem leftChild, final AgendaItem rightChild, final SyntaxTreeNode node) {
+		return combineNodes(leftChild, rightChild, () -> node);
+	}
+
+	@Override
+	public AgendaItem combineNodes(final AgendaItem leftChild, final AgendaItem rightChild,
+			final Supplier<SyntaxTreeNode> node) {
 		final int length = leftChild.spanLength + rightChild.spanLength;
+		return new AgendaItem(node, getCombinedInsideScore(leftChild, rightChild), getOutsideUpperBound(
+				leftChild.startOfSpan, leftChild.startOfSpan + length), leftChild.startOfSpan, length,
+				includeDependencies);
+	}
 
+	private double getCombinedInsideScore(final AgendaItem leftChild, final AgendaItem rightChild) {
 		// Add a penalty based on length of distance between the heads of the two children.
 		// This implements the 'attach low' heuristic.
 		final int depLength = Math.abs(leftChild.getParse().getHeadIndex() - rightChild.getParse().getHeadIndex());
@@ -52,18 +64,25 @@ public class SupertagFactoredModel extends Model {
 			lengthPenalty = lengthPenalty * 10;
 		}
 
-		return new AgendaItem(node, leftChild.getInsideScore() + rightChild.getInsideScore() - lengthPenalty,
-				getOutsideUpperBound(leftChild.startOfSpan, leftChild.startOfSpan + length), leftChild.startOfSpan,
-				length, includeDependencies);
-
+		return leftChild.getInsideScore() + rightChild.getInsideScore() - lengthPenalty;
 	}
 
 	@Override
 	public AgendaItem unary(final AgendaItem child, final SyntaxTreeNode result, final UnaryRule rule) {
+		return unary(child, () -> result, rule);
+	}
+
+	@Override
+	public AgendaItem unary(final AgendaItem child, final Supplier<SyntaxTreeNode> result, final UnaryRule rule) {
 		return new AgendaItem(result, child.getInsideScore() - 0.1, child.outsideScoreUpperbound, child.startOfSpan,
 				child.spanLength, includeDependencies);
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
 	@Override
 	public double getUpperBoundForWord(final int index) {
 		return tagsForWords.get(index).get(0).getScore();
@@ -89,7 +108,7 @@ public class SupertagFactoredModel extends Model {
         return new SupertagFactoredModel(input.getInputSupertags(), includeDependencies);
       } else {
         Preconditions.checkNotNull(tagger, "Inputs should be already tagged if no tagger is given.");
-        return new SupertagFactoredModel(tagger.tag(input.getInputWords()),
+        return new SupertagFactoredModel(tagger.tag(input),
                                          includeDependencies);
       }
 		}
@@ -5,7 +5,6 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
-import com.carrotsearch.hppc.ObjectDoubleHashMap;
 
 import edu.uw.easysrl.dependencies.SRLFrame.SRLLabel;
 import edu.uw.easysrl.lemmatizer.MorphaStemmer;
@@ -32,9 +31,9 @@ public abstract class ArgumentSlotFeature extends Feature {
 		private static final long serialVersionUID = -5087443819141589517L;
 
 		@Override
-		public FeatureKey getFeatureKey(final List<InputWord> words, final int predicateIndex, final SRLLabel role,
-				final Category category, final int argumentNumber, final Preposition preposition) {
-			return hash(super.id, role.hashCode(), preposition.hashCode(),
+		long buildKey(final List<InputWord> words, final int predicateIndex, final SRLLabel role, final Category category,
+				final int argumentNumber, final Preposition preposition, final KeyBuilder builder) {
+			return builder.make(super.id, role.hashCode(), preposition.hashCode(),
 					MorphaStemmer.stemToken(words.get(predicateIndex).word).hashCode());
 
 		}
@@ -49,9 +48,9 @@ public abstract class ArgumentSlotFeature extends Feature {
 		private static final long serialVersionUID = -5087443819141589517L;
 
 		@Override
-		public FeatureKey getFeatureKey(final List<InputWord> words, final int predicateIndex, final SRLLabel role,
-				final Category category, final int argumentNumber, final Preposition preposition) {
-			return hash(super.id, role.hashCode(), category.getArgument(argumentNumber).hashCode());
+		long buildKey(final List<InputWord> words, final int predicateIndex, final SRLLabel role, final Category category,
+				final int argumentNumber, final Preposition preposition, final KeyBuilder builder) {
+			return builder.make(super.id, role.hashCode(), category.getArgument(argumentNumber).hashCode());
 		}
 
 	};
@@ -64,9 +63,9 @@ public abstract class ArgumentSlotFeature extends Feature {
 		private static final long serialVersionUID = -5087443819141589517L;
 
 		@Override
-		public FeatureKey getFeatureKey(final List<InputWord> words, final int predicateIndex, final SRLLabel role,
-				final Category category, final int argumentNumber, final Preposition preposition) {
-			return hash(super.id, role.hashCode(), category.hashCode(), argumentNumber);
+		long buildKey(final List<InputWord> words, final int predicateIndex, final SRLLabel role, final Category category,
+				final int argumentNumber, final Preposition preposition, final KeyBuilder builder) {
+			return builder.make(super.id, role.hashCode(), category.hashCode(), argumentNumber);
 
 		}
 
@@ -80,9 +79,9 @@ public abstract class ArgumentSlotFeature extends Feature {
 		private static final long serialVersionUID = 4705512175495241740L;
 
 		@Override
-		public FeatureKey getFeatureKey(final List<InputWord> words, final int predicateIndex, final SRLLabel role,
-				final Category category, final int argumentNumber, final Preposition preposition) {
-			return hash(super.id, role.isCoreArgument() ? 13 : 7, words.get(predicateIndex).word.indexOf("-") > -1 ? 13
+		long buildKey(final List<InputWord> words, final int predicateIndex, final SRLLabel role, final Category category,
+				final int argumentNumber, final Preposition preposition, final KeyBuilder builder) {
+			return builder.make(super.id, role.isCoreArgument() ? 13 : 7, words.get(predicateIndex).word.indexOf("-") > -1 ? 13
 					: 7);
 		}
 
@@ -93,9 +92,9 @@ public abstract class ArgumentSlotFeature extends Feature {
 		private static final long serialVersionUID = -5087443819141589517L;
 
 		@Override
-		public FeatureKey getFeatureKey(final List<InputWord> words, final int predicateIndex, final SRLLabel role,
-				final Category category, final int argumentNumber, final Preposition preposition) {
-			return hash(super.id, MorphaStemmer.stemToken(words.get(predicateIndex).word).hashCode(),
+		long buildKey(final List<InputWord> words, final int predicateIndex, final SRLLabel role, final Category category,
+				final int argumentNumber, final Preposition preposition, final KeyBuilder builder) {
+			return builder.make(super.id, MorphaStemmer.stemToken(words.get(predicateIndex).word).hashCode(),
 					makeKey(preposition, argumentNumber, category).hashCode(), role.hashCode());
 		}
 
@@ -109,9 +108,9 @@ public abstract class ArgumentSlotFeature extends Feature {
 		private static final long serialVersionUID = -5087443819141589517L;
 
 		@Override
-		public FeatureKey getFeatureKey(final List<InputWord> words, final int predicateIndex, final SRLLabel role,
-				final Category category, final int argumentNumber, final Preposition preposition) {
-			return hash(super.id, MorphaStemmer.stemToken(words.get(predicateIndex).word).hashCode(), role.hashCode(),
+		long buildKey(final List<InputWord> words, final int predicateIndex, final SRLLabel role, final Category category,
+				final int argumentNumber, final Preposition preposition, final KeyBuilder builder) {
+			return builder.make(super.id, MorphaStemmer.stemToken(words.get(predicateIndex).word).hashCode(), role.hashCode(),
 					category.getArgument(argumentNumber).hashCode());
 		}
 
@@ -125,9 +124,9 @@ public abstract class ArgumentSlotFeature extends Feature {
 		private static final long serialVersionUID = -5087443819141589517L;
 
 		@Override
-		public FeatureKey getFeatureKey(final List<InputWord> words, final int predicateIndex, final SRLLabel role,
-				final Category category, final int argumentNumber, final Preposition preposition) {
-			return hash(super.id, MorphaStemmer.stemToken(words.get(predicateIndex).word).hashCode(), role.hashCode(),
+		long buildKey(final List<InputWord> words, final int predicateIndex, final SRLLabel role, final Category category,
+				final int argumentNumber, final Preposition preposition, final KeyBuilder builder) {
+			return builder.make(super.id, MorphaStemmer.stemToken(words.get(predicateIndex).word).hashCode(), role.hashCode(),
 					category.hashCode(), argumentNumber);
 		}
 
@@ -150,9 +149,9 @@ public abstract class ArgumentSlotFeature extends Feature {
 
 	double getFeatureScore(final List<InputWord> words, final int wordIndex, final SRLLabel role,
 			final Category category, final int argumentNumber, final Preposition preposition,
-			final ObjectDoubleHashMap<FeatureKey> featureToScore) {
-		final FeatureKey featureKey = getFeatureKey(words, wordIndex, role, category, argumentNumber, preposition);
-		final double result = featureToScore.getOrDefault(featureKey, Double.MIN_VALUE);
+			final FeatureWeights featureToScore) {
+		final double result = featureToScore.getOrDefault(
+				buildKey(words, wordIndex, role, category, argumentNumber, preposition, HASH), Double.MIN_VALUE);
 		if (result == Double.MIN_VALUE) {
 			if (defaultScore == Double.MIN_VALUE) {
 				defaultScore = featureToScore.getOrDefault(defaultKey, Double.MIN_VALUE);
@@ -177,8 +176,15 @@ public abstract class ArgumentSlotFeature extends Feature {
 		return result;
 	}
 
-	public abstract FeatureKey getFeatureKey(List<InputWord> words, int wordIndex, SRLLabel role, Category category,
-			int argumentNumber, Preposition preposition);
+	public FeatureKey getFeatureKey(final List<InputWord> words, final int wordIndex, final SRLLabel role,
+			final Category category, final int argumentNumber, final Preposition preposition) {
+		final KeyRecorder recorder = new KeyRecorder();
+		buildKey(words, wordIndex, role, category, argumentNumber, preposition, recorder);
+		return recorder.getKey();
+	}
+
+	abstract long buildKey(List<InputWord> words, int wordIndex, SRLLabel role, Category category, int argumentNumber,
+			Preposition preposition, KeyBuilder builder);
 
 	public boolean isLexicalized() {
 		return true;
@@ -255,9 +261,9 @@ public abstract class ArgumentSlotFeature extends Feature {
 		private static final long serialVersionUID = -5087443819141589517L;
 
 		@Override
-		public FeatureKey getFeatureKey(final List<InputWord> words, final int predicateIndex, final SRLLabel role,
-				final Category category, final int argumentNumber, final Preposition preposition) {
-			return hash(super.id, role.hashCode());
+		long buildKey(final List<InputWord> words, final int predicateIndex, final SRLLabel role, final Category category,
+				final int argumentNumber, final Preposition preposition, final KeyBuilder builder) {
+			return builder.make(super.id, role.hashCode());
 
 		}
 
@@ -271,9 +277,9 @@ public abstract class ArgumentSlotFeature extends Feature {
 		private static final long serialVersionUID = 2147289965807795425L;
 
 		@Override
-		public FeatureKey getFeatureKey(final List<InputWord> words, final int predicateIndex, final SRLLabel role,
-				final Category category, final int argumentNumber, final Preposition preposition) {
-			return hash(super.id, role.hashCode(), argumentNumber);
+		long buildKey(final List<InputWord> words, final int predicateIndex, final SRLLabel role, final Category category,
+				final int argumentNumber, final Preposition preposition, final KeyBuilder builder) {
+			return builder.make(super.id, role.hashCode(), argumentNumber);
 		}
 
 	};
@@ -286,9 +292,9 @@ public abstract class ArgumentSlotFeature extends Feature {
 		private static final long serialVersionUID = 2147289965807795425L;
 
 		@Override
-		public FeatureKey getFeatureKey(final List<InputWord> words, final int predicateIndex, final SRLLabel role,
-				final Category category, final int argumentNumber, final Preposition preposition) {
-			return hash(super.id, role.hashCode(), argumentNumber, category.getNumberOfArguments());
+		long buildKey(final List<InputWord> words, final int predicateIndex, final SRLLabel role, final Category category,
+				final int argumentNumber, final Preposition preposition, final KeyBuilder builder) {
+			return builder.make(super.id, role.hashCode(), argumentNumber, category.getNumberOfArguments());
 		}
 
 	};
@@ -301,9 +307,9 @@ public abstract class ArgumentSlotFeature extends Feature {
 		private static final long serialVersionUID = -1167453701712568542L;
 
 		@Override
-		public FeatureKey getFeatureKey(final List<InputWord> words, final int wordIndex, final SRLLabel role,
-				final Category category, final int argumentNumber, final Preposition preposition) {
-			return hash(super.id, MorphaStemmer.stemToken(words.get(wordIndex).word).hashCode(), role.hashCode());
+		long buildKey(final List<InputWord> words, final int wordIndex, final SRLLabel role, final Category category,
+				final int argumentNumber, final Preposition preposition, final KeyBuilder builder) {
+			return builder.make(super.id, MorphaStemmer.stemToken(words.get(wordIndex).word).hashCode(), role.hashCode());
 
 		}
 
@@ -317,9 +323,9 @@ public abstract class ArgumentSlotFeature extends Feature {
 		private static final long serialVersionUID = 2147289965807795425L;
 
 		@Override
-		public FeatureKey getFeatureKey(final List<InputWord> words, final int predicateIndex, final SRLLabel role,
-				final Category category, final int argumentNumber, final Preposition preposition) {
-			return hash(super.id, role.hashCode(), argumentNumber,
+		long buildKey(final List<InputWord> words, final int predicateIndex, final SRLLabel role, final Category category,
+				final int argumentNumber, final Preposition preposition, final KeyBuilder builder) {
+			return builder.make(super.id, role.hashCode(), argumentNumber,
 					MorphaStemmer.stemToken(words.get(predicateIndex).word).hashCode(), category.getNumberOfArguments());
 		}
 
@@ -5,7 +5,6 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
-import com.carrotsearch.hppc.ObjectDoubleHashMap;
 
 import edu.uw.easysrl.dependencies.SRLFrame.SRLLabel;
 import edu.uw.easysrl.lemmatizer.MorphaStemmer;
@@ -57,10 +56,9 @@ public abstract class BilexicalFeature extends Feature {
 
 	double getFeatureScore(final List<InputWord> words, final SRLLabel role,
 			final int predicateIndex, final int argumentIndex,
-			final ObjectDoubleHashMap<FeatureKey> featureToScore) {
-		final FeatureKey featureKey = getFeatureKey(words, role,
-				predicateIndex, argumentIndex);
-		final double result = featureToScore.getOrDefault(featureKey,
+			final FeatureWeights featureToScore) {
+		final double result = featureToScore.getOrDefault(
+				buildKey(words, role, predicateIndex, argumentIndex, HASH),
 				Double.MIN_VALUE);
 		if (result == Double.MIN_VALUE) {
 			if (defaultScore == Double.MIN_VALUE) {
@@ -76,11 +74,13 @@ public abstract class BilexicalFeature extends Feature {
 			final SRLLabel role, final int predicateIndex,
 			final int argumentIndex) {
 
-		return getFeatureKey2(words, role, predicateIndex, argumentIndex);
+		final KeyRecorder recorder = new KeyRecorder();
+		buildKey(words, role, predicateIndex, argumentIndex, recorder);
+		return recorder.getKey();
 	}
 
-	abstract FeatureKey getFeatureKey2(List<InputWord> words, SRLLabel role,
-			int predicateIndex, int argumentIndex);
+	abstract long buildKey(List<InputWord> words, SRLLabel role,
+			int predicateIndex, int argumentIndex, KeyBuilder builder);
 
 	boolean isDependentOnPredicateIndex(
 			@SuppressWarnings("unused") final boolean isCore) {
@@ -158,10 +158,10 @@ public abstract class BilexicalFeature extends Feature {
 		}
 
 		@Override
-		FeatureKey getFeatureKey2(final List<InputWord> words,
-				final SRLLabel role, final int predicateIndex,
-				final int argumentIndex) {
-			return hash(super.id,
+		long buildKey(final List<InputWord> words, final SRLLabel role,
+				final int predicateIndex, final int argumentIndex,
+				final KeyBuilder builder) {
+			return builder.make(super.id,
 					MorphaStemmer.stemToken(words.get(predicateIndex).word)
 							.hashCode(), role.hashCode(), argumentFeature
 							.getValue(words, argumentIndex).hashCode());
@@ -189,9 +189,9 @@ public abstract class BilexicalFeature extends Feature {
 		}
 
 		@Override
-		FeatureKey getFeatureKey2(final List<InputWord> words,
-				final SRLLabel role, final int predicateIndex,
-				final int argumentIndex) {
+		long buildKey(final List<InputWord> words, final SRLLabel role,
+				final int predicateIndex, final int argumentIndex,
+				final KeyBuilder builder) {
 
 			int nonVerbIndex;
 
@@ -202,10 +202,8 @@ public abstract class BilexicalFeature extends Feature {
 			}
 
 			final Object value = feature.getValue(words, nonVerbIndex);
-			final FeatureKey key = hash(super.id, role.hashCode(),
+			return builder.make(super.id, role.hashCode(),
 					feature.getOffset(), value.hashCode());
-
-			return key;
 		}
 
 		@Override
@@ -233,9 +231,9 @@ public abstract class BilexicalFeature extends Feature {
 		}
 
 		@Override
-		FeatureKey getFeatureKey2(final List<InputWord> words,
-				final SRLLabel role, final int predicateIndex,
-				final int argumentIndex) {
+		long buildKey(final List<InputWord> words, final SRLLabel role,
+				final int predicateIndex, final int argumentIndex,
+				final KeyBuilder builder) {
 			final int distance = predicateIndex - argumentIndex;
 			int normalizedDistance;
 			if (distance < -maxValue) {
@@ -247,9 +245,9 @@ public abstract class BilexicalFeature extends Feature {
 			}
 
 			if (includeWordAtOffset == null) {
-				return hash(super.id, role.hashCode(), normalizedDistance);
+				return builder.make(super.id, role.hashCode(), normalizedDistance);
 			} else {
-				return hash(super.id, role.hashCode(), normalizedDistance,
+				return builder.make(super.id, role.hashCode(), normalizedDistance,
 						getWord(words, includeWordAtOffset).hashCode());
 			}
 
@@ -270,10 +268,10 @@ public abstract class BilexicalFeature extends Feature {
 		}
 
 		@Override
-		FeatureKey getFeatureKey2(final List<InputWord> words,
-				final SRLLabel role, final int predicateIndex,
-				final int argumentIndex) {
-			return hash(super.id,
+		long buildKey(final List<InputWord> words, final SRLLabel role,
+				final int predicateIndex, final int argumentIndex,
+				final KeyBuilder builder) {
+			return builder.make(super.id,
 					MorphaStemmer.stemToken(words.get(predicateIndex).word)
 							.hashCode(), role.hashCode(),
 					Util.isCapitalized(words.get(argumentIndex).word) ? 7 : 13);
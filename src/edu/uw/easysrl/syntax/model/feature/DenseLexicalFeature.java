@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 
+import edu.uw.easysrl.main.InputReader.InputToParser;
 import edu.uw.easysrl.main.InputReader.InputWord;
 import edu.uw.easysrl.syntax.grammar.Category;
 import edu.uw.easysrl.syntax.model.feature.Feature.LexicalCategoryFeature;
@@ -71,4 +72,11 @@ public class DenseLexicalFeature extends LexicalCategoryFeature {
         return tagger.getCategoryScores(words, supertaggerWeight);
     }
 
+    /**
+     * Like getCategoryScores(words), but shares supertagger scores with other parsers of the same input.
+     */
+    public List<Map<Category, Double>> getCategoryScores(final InputToParser input, final double supertaggerWeight) {
+        return tagger.getCategoryScores(input, supertaggerWeight);
+    }
+
 }
@@ -7,7 +7,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import com.carrotsearch.hppc.ObjectDoubleHashMap;
 
 import edu.uw.easysrl.main.InputReader.InputWord;
 import edu.uw.easysrl.syntax.grammar.Category;
@@ -89,6 +88,102 @@ public abstract class Feature implements Serializable {
 		return new FeatureKey(objects);
 	}
 
+	/**
+	 * Combines the values of a feature key. Features define their keys in terms of a KeyBuilder, so that the same
+	 * definition gives a FeatureKey for training, or just the key's hash for looking up a weight while parsing.
+	 */
+	interface KeyBuilder {
+		long make(int a);
+
+		long make(int a, int b);
+
+		long make(int a, int b, int c);
+
+		long make(int a, int b, int c, int d);
+
+		long make(int a, int b, int c, int d, int e);
+	}
+
+	/**
+	 * Returns FeatureWeights.hash() of the values, without allocating a FeatureKey.
+	 */
+	final static KeyBuilder HASH = new HashKeyBuilder();
+
+	/**
+	 * A named class, because an anonymous one would change the names of the anonymous Feature classes below, which
+	 * are in serialized models.
+	 */
+	static final class HashKeyBuilder implements KeyBuilder {
+		@Override
+		public long make(final int a) {
+			return FeatureWeights.finish(FeatureWeights.mix(0L, a), 1);
+		}
+
+		@Override
+		public long make(final int a, final int b) {
+			return FeatureWeights.finish(FeatureWeights.mix(FeatureWeights.mix(0L, a), b), 2);
+		}
+
+		@Override
+		public long make(final int a, final int b, final int c) {
+			return FeatureWeights.finish(FeatureWeights.mix(FeatureWeights.mix(FeatureWeights.mix(0L, a), b), c), 3);
+		}
+
+		@Override
+		public long make(final int a, final int b, final int c, final int d) {
+			return FeatureWeights.finish(
+					FeatureWeights.mix(FeatureWeights.mix(FeatureWeights.mix(FeatureWeights.mix(0L, a), b), c), d), 4);
+		}
+
+		@Override
+		public long make(final int a, final int b, final int c, final int d, final int e) {
+			return FeatureWeights.finish(FeatureWeights.mix(
+					FeatureWeights.mix(FeatureWeights.mix(FeatureWeights.mix(FeatureWeights.mix(0L, a), b), c), d), e),
+					5);
+		}
+	}
+
+	/**
+	 * Keeps the last key made, as a FeatureKey.
+	 */
+	static class KeyRecorder implements KeyBuilder {
+		private FeatureKey key;
+
+		private long record(final int... values) {
+			key = new FeatureKey(values);
+			return FeatureWeights.hash(values);
+		}
+
+		@Override
+		public long make(final int a) {
+			return record(a);
+		}
+
+		@Override
+		public long make(final int a, final int b) {
+			return record(a, b);
+		}
+
+		@Override
+		public long make(final int a, final int b, final int c) {
+			return record(a, b, c);
+		}
+
+		@Override
+		public long make(final int a, final int b, final int c, final int d) {
+			return record(a, b, c, d);
+		}
+
+		@Override
+		public long make(final int a, final int b, final int c, final int d, final int e) {
+			return record(a, b, c, d, e);
+		}
+
+		FeatureKey getKey() {
+			return key;
+		}
+	}
+
 	public static abstract class UnaryRuleFeature extends Feature {
 		private final FeatureKey defaultKey;
 		private int defaultIndex = 0;
@@ -105,9 +200,9 @@ public abstract class Feature implements Serializable {
 		private static final long serialVersionUID = 1L;
 
 		public double getFeatureScore(final int ruleID, final List<InputWord> sentence, final int spanStart,
-				final int spanEnd, final ObjectDoubleHashMap<FeatureKey> featureToScore) {
-			final FeatureKey featureKey = getFeatureKey(ruleID, sentence, spanStart, spanEnd);
-			final double result = featureToScore.getOrDefault(featureKey, Double.MIN_VALUE);
+				final int spanEnd, final FeatureWeights featureToScore) {
+			final double result = featureToScore.getOrDefault(buildKey(ruleID, sentence, spanStart, spanEnd, HASH),
+					Double.MIN_VALUE);
 			if (result == Double.MIN_VALUE) {
 				if (defaultScore == Double.MIN_VALUE) {
 					defaultScore = featureToScore.get(defaultKey);
@@ -143,8 +238,15 @@ public abstract class Feature implements Serializable {
 			return result;
 		}
 
-		public abstract FeatureKey getFeatureKey(final int ruleID, final List<InputWord> sentence, final int spanStart,
-				final int spanEnd);
+		public FeatureKey getFeatureKey(final int ruleID, final List<InputWord> sentence, final int spanStart,
+				final int spanEnd) {
+			final KeyRecorder recorder = new KeyRecorder();
+			buildKey(ruleID, sentence, spanStart, spanEnd, recorder);
+			return recorder.getKey();
+		}
+
+		abstract long buildKey(final int ruleID, final List<InputWord> sentence, final int spanStart,
+				final int spanEnd, KeyBuilder builder);
 
 	}
 
@@ -153,9 +255,9 @@ public abstract class Feature implements Serializable {
 		private static final long serialVersionUID = 1L;
 
 		@Override
-		public FeatureKey getFeatureKey(final int ruleID, final List<InputWord> sentence, final int spanStart,
-				final int spanEnd) {
-			return hash(super.id, ruleID);
+		long buildKey(final int ruleID, final List<InputWord> sentence, final int spanStart, final int spanEnd,
+				final KeyBuilder builder) {
+			return builder.make(super.id, ruleID);
 		}
 	};
 
@@ -165,9 +267,9 @@ public abstract class Feature implements Serializable {
 		private static final long serialVersionUID = 1L;
 
 		@Override
-		public FeatureKey getFeatureKey(final int ruleID, final List<InputWord> sentence, final int spanStart,
-				final int spanEnd) {
-			return hash(super.id, ruleID, Math.min(10, spanEnd - spanStart));
+		long buildKey(final int ruleID, final List<InputWord> sentence, final int spanStart, final int spanEnd,
+				final KeyBuilder builder) {
+			return builder.make(super.id, ruleID, Math.min(10, spanEnd - spanStart));
 		}
 	};
 
@@ -177,9 +279,9 @@ public abstract class Feature implements Serializable {
 		private static final long serialVersionUID = 1L;
 
 		@Override
-		public FeatureKey getFeatureKey(final int ruleID, final List<InputWord> sentence, final int spanStart,
-				final int spanEnd) {
-			return hash(super.id, ruleID, (spanStart == 0 ? "" : sentence.get(spanStart - 1).word).hashCode());
+		long buildKey(final int ruleID, final List<InputWord> sentence, final int spanStart, final int spanEnd,
+				final KeyBuilder builder) {
+			return builder.make(super.id, ruleID, (spanStart == 0 ? "" : sentence.get(spanStart - 1).word).hashCode());
 		}
 	};
 	public final static Collection<UnaryRuleFeature> unaryRules = Arrays.asList(unaryRuleIDFeature);
@@ -209,9 +311,8 @@ public abstract class Feature implements Serializable {
 		}
 
 		public double getFeatureScore(final List<InputWord> words, final Category category,
-				final ObjectDoubleHashMap<FeatureKey> featureToScore) {
-			final FeatureKey featureKey = getFeatureKey(category, words);
-			final double result = featureToScore.getOrDefault(featureKey, Double.MIN_VALUE);
+				final FeatureWeights featureToScore) {
+			final double result = featureToScore.getOrDefault(buildKey(category, words, HASH), Double.MIN_VALUE);
 			if (result == Double.MIN_VALUE) {
 				if (defaultScore == Double.MIN_VALUE) {
 					defaultScore = featureToScore.get(defaultKey);
@@ -231,14 +332,20 @@ public abstract class Feature implements Serializable {
 			defaultIndex = 0;
 		}
 
-		public abstract FeatureKey getFeatureKey(Category category, List<InputWord> sentence);
+		public FeatureKey getFeatureKey(final Category category, final List<InputWord> sentence) {
+			final KeyRecorder recorder = new KeyRecorder();
+			buildKey(category, sentence, recorder);
+			return recorder.getKey();
+		}
+
+		abstract long buildKey(Category category, List<InputWord> sentence, KeyBuilder builder);
 
 		public static RootCategoryFeature justCategoryFeature = new RootCategoryFeature() {
 			private static final long serialVersionUID = 1L;
 
 			@Override
-			public FeatureKey getFeatureKey(final Category category, final List<InputWord> sentence) {
-				return hash(super.id, category.hashCode());
+			long buildKey(final Category category, final List<InputWord> sentence, final KeyBuilder builder) {
+				return builder.make(super.id, category.hashCode());
 			}
 		};
 
@@ -247,8 +354,8 @@ public abstract class Feature implements Serializable {
 			private static final long serialVersionUID = 1L;
 
 			@Override
-			public FeatureKey getFeatureKey(final Category category, final List<InputWord> sentence) {
-				return hash(super.id, category.hashCode(), sentence.get(0).word.hashCode());
+			long buildKey(final Category category, final List<InputWord> sentence, final KeyBuilder builder) {
+				return builder.make(super.id, category.hashCode(), sentence.get(0).word.hashCode());
 			}
 		};
 
@@ -257,8 +364,8 @@ public abstract class Feature implements Serializable {
 			private static final long serialVersionUID = 1L;
 
 			@Override
-			public FeatureKey getFeatureKey(final Category category, final List<InputWord> sentence) {
-				return hash(super.id, category.hashCode(), sentence.get(sentence.size() - 1).word.hashCode());
+			long buildKey(final Category category, final List<InputWord> sentence, final KeyBuilder builder) {
+				return builder.make(super.id, category.hashCode(), sentence.get(sentence.size() - 1).word.hashCode());
 			}
 		};
 
@@ -267,8 +374,8 @@ public abstract class Feature implements Serializable {
 			private static final long serialVersionUID = 1L;
 
 			@Override
-			public FeatureKey getFeatureKey(final Category category, final List<InputWord> sentence) {
-				return hash(super.id, category.hashCode(), sentence.size());
+			long buildKey(final Category category, final List<InputWord> sentence, final KeyBuilder builder) {
+				return builder.make(super.id, category.hashCode(), sentence.size());
 			}
 		};
 
@@ -317,17 +424,26 @@ public abstract class Feature implements Serializable {
 			return result;
 		}
 
-		public abstract FeatureKey getFeatureKey(final Category category, final RuleType ruleClass,
-				final Category left, final RuleClass leftRuleClass, final int leftLength, final Category right,
-				final RuleClass rightRuleClass, int rightLength, List<InputWord> sentence);
+		public FeatureKey getFeatureKey(final Category category, final RuleType ruleClass, final Category left,
+				final RuleClass leftRuleClass, final int leftLength, final Category right,
+				final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence) {
+			final KeyRecorder recorder = new KeyRecorder();
+			buildKey(category, ruleClass, left, leftRuleClass, leftLength, right, rightRuleClass, rightLength, sentence,
+					recorder);
+			return recorder.getKey();
+		}
+
+		abstract long buildKey(final Category category, final RuleType ruleClass, final Category left,
+				final RuleClass leftRuleClass, final int leftLength, final Category right,
+				final RuleClass rightRuleClass, int rightLength, List<InputWord> sentence, KeyBuilder builder);
 
 		public double getFeatureScore(final Category category, final RuleType ruleClass, final Category left,
 				final RuleClass leftRuleClass, final int leftLength, final Category right,
 				final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence,
-				final ObjectDoubleHashMap<FeatureKey> featureToScore) {
-			final FeatureKey featureKey = getFeatureKey(category, ruleClass, left, leftRuleClass, leftLength, right,
-					rightRuleClass, rightLength, sentence);
-			final double result = featureToScore.getOrDefault(featureKey, Double.MIN_VALUE);
+				final FeatureWeights featureToScore) {
+			final double result = featureToScore.getOrDefault(
+					buildKey(category, ruleClass, left, leftRuleClass, leftLength, right, rightRuleClass, rightLength,
+							sentence, HASH), Double.MIN_VALUE);
 			if (result == Double.MIN_VALUE) {
 				if (defaultScore == Double.MIN_VALUE) {
 					defaultScore = featureToScore.get(defaultKey);
@@ -342,10 +458,11 @@ public abstract class Feature implements Serializable {
 			private static final long serialVersionUID = 1L;
 
 			@Override
-			public FeatureKey getFeatureKey(final Category result, final RuleType ruleClass, final Category left,
+			long buildKey(final Category result, final RuleType ruleClass, final Category left,
 					final RuleClass leftRuleClass, final int leftLength, final Category right,
-					final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence) {
-				return hash(super.id, left.hashCode(), right.hashCode());
+					final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence,
+					final KeyBuilder builder) {
+				return builder.make(super.id, left.hashCode(), right.hashCode());
 			}
 		};
 
@@ -354,10 +471,11 @@ public abstract class Feature implements Serializable {
 			private static final long serialVersionUID = 1L;
 
 			@Override
-			public FeatureKey getFeatureKey(final Category result, final RuleType ruleClass, final Category left,
+			long buildKey(final Category result, final RuleType ruleClass, final Category left,
 					final RuleClass leftRuleClass, final int leftLength, final Category right,
-					final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence) {
-				return hash(super.id, left.hashCode(), right.hashCode(), result.hashCode());
+					final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence,
+					final KeyBuilder builder) {
+				return builder.make(super.id, left.hashCode(), right.hashCode(), result.hashCode());
 			}
 		};
 
@@ -366,10 +484,11 @@ public abstract class Feature implements Serializable {
 			private static final long serialVersionUID = 1L;
 
 			@Override
-			public FeatureKey getFeatureKey(final Category result, final RuleType ruleClass, final Category left,
+			long buildKey(final Category result, final RuleType ruleClass, final Category left,
 					final RuleClass leftRuleClass, final int leftLength, final Category right,
-					final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence) {
-				return hash(super.id, ruleClass.toString().hashCode());
+					final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence,
+					final KeyBuilder builder) {
+				return builder.make(super.id, ruleClass.toString().hashCode());
 			}
 		};
 
@@ -380,10 +499,11 @@ public abstract class Feature implements Serializable {
 			private static final long serialVersionUID = 1L;
 
 			@Override
-			public FeatureKey getFeatureKey(final Category result, final RuleType ruleClass, final Category left,
+			long buildKey(final Category result, final RuleType ruleClass, final Category left,
 					final RuleClass leftRuleClass, final int leftLength, final Category right,
-					final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence) {
-				return hash(super.id, leftRuleClass.toString().hashCode(), left.hashCode(), rightLength);
+					final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence,
+					final KeyBuilder builder) {
+				return builder.make(super.id, leftRuleClass.toString().hashCode(), left.hashCode(), rightLength);
 			}
 		};
 
@@ -392,10 +512,11 @@ public abstract class Feature implements Serializable {
 			private static final long serialVersionUID = 1L;
 
 			@Override
-			public FeatureKey getFeatureKey(final Category result, final RuleType ruleClass, final Category left,
+			long buildKey(final Category result, final RuleType ruleClass, final Category left,
 					final RuleClass leftRuleClass, final int leftLength, final Category right,
-					final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence) {
-				return hash(super.id, rightRuleClass.toString().hashCode(), right.hashCode(), leftLength);
+					final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence,
+					final KeyBuilder builder) {
+				return builder.make(super.id, rightRuleClass.toString().hashCode(), right.hashCode(), leftLength);
 			}
 		};
 
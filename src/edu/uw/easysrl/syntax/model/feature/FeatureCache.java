@@ -31,14 +31,24 @@ public class FeatureCache {
 	private final List<BilexicalFeature> justPredicateFeaturesAdjunct = new ArrayList<>();
 	private final List<BilexicalFeature> justArgumentFeaturesAdjunct = new ArrayList<>();
 	private final List<BilexicalFeature> bilexicalFeatures = new ArrayList<>();
-	private final ObjectDoubleHashMap<FeatureKey> featureToScore;
+	private final FeatureWeights featureToScore;
 
-	@SuppressWarnings("unchecked")
-	public FeatureCache(final List<InputWord> words, final ObjectDoubleHashMap<FeatureKey> featureToScore,
+	public FeatureCache(final List<InputWord> words, final FeatureWeights featureToScore,
 			final FeatureSet featureSet, final double supertaggerWeight, final SlotFeatureCache slotFeatureCache) {
+		this(words, featureSet.lexicalCategoryFeatures.getCategoryScores(words, supertaggerWeight), featureToScore,
+				featureSet, slotFeatureCache);
+	}
+
+	/**
+	 * @param wordToCategoryToScore
+	 *            Weighted supertagger scores for each word, from the featureSet's lexicalCategoryFeatures.
+	 */
+	@SuppressWarnings("unchecked")
+	public FeatureCache(final List<InputWord> words, final List<Map<Category, Double>> wordToCategoryToScore,
+			final FeatureWeights featureToScore, final FeatureSet featureSet, final SlotFeatureCache slotFeatureCache) {
 
 		this.slotFeatureCache = slotFeatureCache;
-		this.wordToCategoryToScore = featureSet.lexicalCategoryFeatures.getCategoryScores(words, supertaggerWeight);
+		this.wordToCategoryToScore = wordToCategoryToScore;
 
 		this.predicateToLabelToScore = new ObjectDoubleHashMap[words.size()];
 		this.argumentToLabelToScore = new ObjectDoubleHashMap[words.size()];
@@ -171,13 +181,13 @@ public class FeatureCache {
 	}
 
 	public static class SlotFeatureCache {
-		private final ObjectDoubleHashMap<FeatureKey> featureToScore;
+		private final FeatureWeights featureToScore;
 		private final List<ArgumentSlotFeature> lexicalizedSlotFeatures = new ArrayList<>();
 		private final List<ArgumentSlotFeature> unlexicalizedSlotFeatures = new ArrayList<>();
 		private final double[][][][] categoryToSlotToPrepositionToScore = new double[Category.numberOfCategories()][6][Preposition
 				.numberOfPrepositions() + 1][SRLLabel.numberOfLabels()];
 
-		public SlotFeatureCache(final FeatureSet featureSet, final ObjectDoubleHashMap<FeatureKey> featureToScore) {
+		public SlotFeatureCache(final FeatureSet featureSet, final FeatureWeights featureToScore) {
 			for (final ArgumentSlotFeature feature : featureSet.argumentSlotFeatures) {
 				if (feature.isLexicalized()) {
 					lexicalizedSlotFeatures.add(feature);
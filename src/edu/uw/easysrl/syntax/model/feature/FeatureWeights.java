@@ -0,0 +1,164 @@
+package edu.uw.easysrl.syntax.model.feature;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.Map;
+
+import edu.uw.easysrl.syntax.model.feature.Feature.FeatureKey;
+import edu.uw.easysrl.util.BinaryModelFile;
+import edu.uw.easysrl.util.Hashing;
+
+/**
+ * Weights of features, in an open-addressing hash table from a 64-bit hash of each feature's key to its weight. Keys
+ * are not stored, so features are assumed not to collide: for 10 million features, the chance of any collision is
+ * about 1 in 370,000 (and collisions are reported when the table is built).
+ *
+ * Uses 16 bytes per slot, rather than the boxed keys of a Map<FeatureKey, Integer>. The table can be saved, and then
+ * memory-mapped when the model is loaded.
+ */
+public class FeatureWeights {
+	/**
+	 * File in the model folder containing compiled feature weights.
+	 */
+	public final static String COMPILED_FILE = "featureWeights.bin";
+	private final static String FORMAT = "EasySRL FeatureWeights";
+	private final static int VERSION = 1;
+
+	/**
+	 * Marks unused slots. hash() never returns it.
+	 */
+	private final static long EMPTY = 0L;
+	private final static double MAX_LOAD_FACTOR = 0.5;
+
+	private final LongBuffer keys;
+	private final DoubleBuffer values;
+	private final int mask;
+	private final int size;
+
+	private FeatureWeights(final LongBuffer keys, final DoubleBuffer values, final int size) {
+		this.keys = keys;
+		this.values = values;
+		this.mask = keys.limit() - 1;
+		this.size = size;
+	}
+
+	/**
+	 * Builds the table from a trained model, where the weight of each feature is weights[featureToIndex.get(key)].
+	 */
+	public static FeatureWeights make(final Map<FeatureKey, Integer> featureToIndex, final double[] weights) {
+		int capacity = 2;
+		while (capacity * MAX_LOAD_FACTOR < featureToIndex.size()) {
+			capacity *= 2;
+		}
+
+		final long[] keys = new long[capacity];
+		final double[] values = new double[capacity];
+		int collisions = 0;
+		for (final Map.Entry<FeatureKey, Integer> entry : featureToIndex.entrySet()) {
+			final long hash = hash(entry.getKey().getValues());
+			int slot = (int) hash & (capacity - 1);
+			while (keys[slot] != EMPTY && keys[slot] != hash) {
+				slot = (slot + 1) & (capacity - 1);
+			}
+
+			if (keys[slot] == hash) {
+				// Keeps the first feature's weight.
+				collisions++;
+			} else {
+				keys[slot] = hash;
+				values[slot] = weights[entry.getValue()];
+			}
+		}
+
+		if (collisions > 0) {
+			System.err.println("Warning: " + collisions + " feature hash collisions");
+		}
+
+		return new FeatureWeights(LongBuffer.wrap(keys), DoubleBuffer.wrap(values), featureToIndex.size()
+				- collisions);
+	}
+
+	/**
+	 * Memory-maps a table written by save().
+	 */
+	public static FeatureWeights load(final File file) throws IOException {
+		final BinaryModelFile.Reader reader = BinaryModelFile.Reader.open(file, FORMAT, VERSION);
+		final int size = reader.readInt();
+		final LongBuffer keys = reader.readLongs();
+		final DoubleBuffer values = reader.readDoubles();
+		if (Integer.bitCount(keys.limit()) != 1 || keys.limit() != values.limit()) {
+			throw new IOException("Corrupt feature weights file: " + file);
+		}
+
+		return new FeatureWeights(keys, values, size);
+	}
+
+	public void save(final File file) throws IOException {
+		try (BinaryModelFile.Writer writer = new BinaryModelFile.Writer(file, FORMAT, VERSION)) {
+			writer.writeInt(size);
+			writer.writeLongs(keys);
+			writer.writeDoubles(values);
+			writer.commit();
+		}
+	}
+
+	/**
+	 * Number of features in the table.
+	 */
+	public int size() {
+		return size;
+	}
+
+	public double getOrDefault(final FeatureKey key, final double defaultValue) {
+		return getOrDefault(hash(key.getValues()), defaultValue);
+	}
+
+	/**
+	 * Returns the weight of the key, or 0 if it isn't in the table.
+	 */
+	public double get(final FeatureKey key) {
+		return getOrDefault(key, 0.0);
+	}
+
+	/**
+	 * Looks up a feature by the value of hash() for its key.
+	 */
+	public double getOrDefault(final long hash, final double defaultValue) {
+		int slot = (int) hash & mask;
+		while (true) {
+			final long key = keys.get(slot);
+			if (key == hash) {
+				return values.get(slot);
+			} else if (key == EMPTY) {
+				return defaultValue;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/**
+	 * 64-bit hash of a feature key's values.
+	 */
+	public static long hash(final int[] values) {
+		long hash = 0L;
+		for (final int value : values) {
+			hash = mix(hash, value);
+		}
+
+		return finish(hash, values.length);
+	}
+
+	/**
+	 * Adds one value to a hash. hash(values) is finish(mix(mix(0, values[0]), values[1]) ..., values.length).
+	 */
+	static long mix(final long hash, final int value) {
+		return Hashing.mix(hash, value);
+	}
+
+	static long finish(final long hash, final int length) {
+		final long result = Hashing.finish(hash ^ length);
+		return result == EMPTY ? 1L : result;
+	}
+}
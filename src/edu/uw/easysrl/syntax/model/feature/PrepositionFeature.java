@@ -5,7 +5,6 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
-import com.carrotsearch.hppc.ObjectDoubleHashMap;
 
 import edu.uw.easysrl.lemmatizer.MorphaStemmer;
 import edu.uw.easysrl.main.InputReader.InputWord;
@@ -31,10 +30,10 @@ public abstract class PrepositionFeature extends Feature {
 		private static final long serialVersionUID = 1L;
 
 		@Override
-		public FeatureKey getFeatureKey(final List<InputWord> words,
-				final int wordIndex, final Category category,
-				final Preposition preposition, final int argumentNumber) {
-			return hash(super.id, preposition.hashCode(),
+		long buildKey(final List<InputWord> words, final int wordIndex,
+				final Category category, final Preposition preposition,
+				final int argumentNumber, final KeyBuilder builder) {
+			return builder.make(super.id, preposition.hashCode(),
 					words.get(wordIndex).word.hashCode());
 		}
 	};
@@ -47,10 +46,10 @@ public abstract class PrepositionFeature extends Feature {
 		private static final long serialVersionUID = 1L;
 
 		@Override
-		public FeatureKey getFeatureKey(final List<InputWord> words,
-				final int wordIndex, final Category category,
-				final Preposition preposition, final int argumentNumber) {
-			return hash(super.id, preposition.hashCode(), argumentNumber,
+		long buildKey(final List<InputWord> words, final int wordIndex,
+				final Category category, final Preposition preposition,
+				final int argumentNumber, final KeyBuilder builder) {
+			return builder.make(super.id, preposition.hashCode(), argumentNumber,
 					category.hashCode());
 		}
 	};
@@ -63,10 +62,10 @@ public abstract class PrepositionFeature extends Feature {
 		private static final long serialVersionUID = 1L;
 
 		@Override
-		public FeatureKey getFeatureKey(final List<InputWord> words,
-				final int wordIndex, final Category category,
-				final Preposition preposition, final int argumentNumber) {
-			return hash(super.id, preposition.hashCode(), MorphaStemmer
+		long buildKey(final List<InputWord> words, final int wordIndex,
+				final Category category, final Preposition preposition,
+				final int argumentNumber, final KeyBuilder builder) {
+			return builder.make(super.id, preposition.hashCode(), MorphaStemmer
 					.stemToken(words.get(wordIndex).word).hashCode());
 		}
 	};
@@ -110,18 +109,26 @@ public abstract class PrepositionFeature extends Feature {
 		return result;
 	}
 
-	public abstract FeatureKey getFeatureKey(List<InputWord> words,
-			int wordIndex, Category category, Preposition preposition,
-			int argumentNumber);
+	public FeatureKey getFeatureKey(final List<InputWord> words,
+			final int wordIndex, final Category category,
+			final Preposition preposition, final int argumentNumber) {
+		final KeyRecorder recorder = new KeyRecorder();
+		buildKey(words, wordIndex, category, preposition, argumentNumber,
+				recorder);
+		return recorder.getKey();
+	}
+
+	abstract long buildKey(List<InputWord> words, int wordIndex,
+			Category category, Preposition preposition, int argumentNumber,
+			KeyBuilder builder);
 
 	public double getFeatureScore(final List<InputWord> words,
 			final int wordIndex, final Preposition preposition,
 			final Category category, final int argumentNumber,
-			final ObjectDoubleHashMap<FeatureKey> featureToScore) {
-		final FeatureKey featureKey = getFeatureKey(words, wordIndex, category,
-				preposition, argumentNumber);
-		final double result = featureToScore.getOrDefault(featureKey,
-				Double.MIN_VALUE);
+			final FeatureWeights featureToScore) {
+		final double result = featureToScore.getOrDefault(
+				buildKey(words, wordIndex, category, preposition,
+						argumentNumber, HASH), Double.MIN_VALUE);
 		if (result == Double.MIN_VALUE) {
 			if (defaultScore == Double.MIN_VALUE) {
 				defaultScore = featureToScore.get(defaultKey);
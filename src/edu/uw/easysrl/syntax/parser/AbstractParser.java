@@ -5,9 +5,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.collect.HashMultimap;
@@ -16,7 +14,6 @@ import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Table.Cell;
 
 import edu.uw.easysrl.dependencies.Coindexation;
 import edu.uw.easysrl.dependencies.DependencyStructure;
@@ -25,6 +22,7 @@ import edu.uw.easysrl.semantics.Logic;
 import edu.uw.easysrl.semantics.LogicParser;
 import edu.uw.easysrl.semantics.lexicon.DefaultLexicon;
 import edu.uw.easysrl.semantics.lexicon.Lexicon;
+import edu.uw.easysrl.syntax.grammar.BinaryRuleTable;
 import edu.uw.easysrl.syntax.grammar.Category;
 import edu.uw.easysrl.syntax.grammar.Category.Slash;
 import edu.uw.easysrl.syntax.grammar.Combinator;
@@ -51,6 +49,7 @@ public abstract class AbstractParser implements Parser {
 		this.maxLength = maxSentenceLength;
 		this.nbest = nbest;
 		this.unaryRules = loadUnaryRules(unaryRulesFile);
+		this.unaryRuleTable = new UnaryRuleTable(unaryRules);
 		this.seenRules = new SeenRules(seenRulesFile, lexicalCategories);
 		this.lexicalCategories = lexicalCategories;
 		Coindexation.parseMarkedUpFile(markedupFile);
@@ -64,10 +63,8 @@ public abstract class AbstractParser implements Parser {
 
 		possibleRootCategories = ImmutableSet.copyOf(validRootCategories);
 
-		for (final Cell<Category, Category, List<RuleProduction>> entry : seenRules.ruleTable().cellSet()) {
-			// Cache out all the rules in advance.
-			getRules(entry.getRowKey(), entry.getColumnKey());
-		}
+		// Cache out all the rules in advance.
+		this.binaryRuleTable = new BinaryRuleTable(seenRules, binaryRules);
 	}
 
 	protected final int maxLength;
@@ -75,9 +72,11 @@ public abstract class AbstractParser implements Parser {
 	protected double nbestBeam = 0.001;
 	protected final Collection<Combinator> binaryRules;
 	protected final ListMultimap<Category, UnaryRule> unaryRules;
+	final UnaryRuleTable unaryRuleTable;
 	protected final int nbest;
 
 	protected final SeenRules seenRules;
+	protected final BinaryRuleTable binaryRuleTable;
 
 	protected final Collection<Category> possibleRootCategories;
 
@@ -194,40 +193,32 @@ public abstract class AbstractParser implements Parser {
 	 */
 	@Override
 	public List<Scored<SyntaxTreeNode>> doParsing(final InputToParser input) {
+		return doParsing(input, Deadline.NONE);
+	}
+
+	@Override
+	public List<Scored<SyntaxTreeNode>> doParsing(final InputToParser input, final Deadline deadline) {
 		if (input.length() > maxLength) {
 			System.err.println("Skipping sentence of length " + input.length());
 			return null;
 		}
 
-		return parseAstar(input);
+		return parseAstar(input, deadline);
 	}
 
 	/**
 	 * Takes supertagged input and returns a set of parses.
 	 *
-	 * Returns null if the parse fails.
+	 * Returns null if the parse fails, and throws a Deadline.ExpiredException if the deadline expires first.
 	 */
-	abstract List<Scored<SyntaxTreeNode>> parseAstar(InputToParser sentence);
-
-	private final Map<Category, Map<Category, List<RuleProduction>>> ruleCache = new IdentityHashMap<>();
+	abstract List<Scored<SyntaxTreeNode>> parseAstar(InputToParser sentence, Deadline deadline);
 
 	/**
-	 * Returns the set of binary rule productions between these two categories.
+	 * Returns the set of binary rule productions between these two categories. The set is empty if the categories
+	 * weren't seen combining in the training data.
 	 */
 	protected List<RuleProduction> getRules(final Category left, final Category right) {
-		Map<Category, List<RuleProduction>> rightToRules = ruleCache.get(left);
-		if (rightToRules == null) {
-			rightToRules = new IdentityHashMap<>();
-			ruleCache.put(left, rightToRules);
-		}
-
-		List<RuleProduction> result = rightToRules.get(right);
-		if (result == null) {
-			result = Combinator.getRules(left, right, binaryRules);
-			rightToRules.put(right, result);
-		}
-
-		return result;
+		return binaryRuleTable.getRules(left, right);
 	}
 
 	@Override
@@ -0,0 +1,156 @@
+package edu.uw.easysrl.syntax.parser;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import edu.uw.easysrl.syntax.model.AgendaItem;
+
+/**
+ * Priority queue of AgendaItems, highest cost first, for A* parsing. It's a 4-ary heap, with the costs in a double[]
+ * alongside the items. So sifting compares array entries, rather than following pointers to the items, and the
+ * heap is half the depth of a binary heap.
+ *
+ * Agendas can grow to hundreds of thousands of items on long sentences, so the arrays are kept when the agenda is
+ * cleared, so that one agenda can be reused for each sentence parsed on a thread.
+ */
+public class Agenda extends AbstractQueue<AgendaItem> {
+	private final static int ARITY = 4;
+
+	private double[] costs;
+	private AgendaItem[] items;
+	private int size = 0;
+
+	public Agenda(final int initialCapacity) {
+		costs = new double[initialCapacity];
+		items = new AgendaItem[initialCapacity];
+	}
+
+	@Override
+	public boolean offer(final AgendaItem item) {
+		if (size == items.length) {
+			final int capacity = Math.max(16, size * 2);
+			costs = Arrays.copyOf(costs, capacity);
+			items = Arrays.copyOf(items, capacity);
+		}
+
+		siftUp(size, item.getCost(), item);
+		size++;
+		return true;
+	}
+
+	@Override
+	public AgendaItem poll() {
+		if (size == 0) {
+			return null;
+		}
+
+		final AgendaItem result = items[0];
+		size--;
+		final double lastCost = costs[size];
+		final AgendaItem lastItem = items[size];
+		items[size] = null;
+		if (size > 0) {
+			siftDown(0, lastCost, lastItem);
+		}
+
+		return result;
+	}
+
+	@Override
+	public AgendaItem peek() {
+		return size == 0 ? null : items[0];
+	}
+
+	/**
+	 * Cost of the best item. The agenda must not be empty.
+	 */
+	public double peekCost() {
+		return costs[0];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes all the items, but keeps the arrays.
+	 */
+	@Override
+	public void clear() {
+		Arrays.fill(items, 0, size, null);
+		size = 0;
+	}
+
+	private void siftUp(int index, final double cost, final AgendaItem item) {
+		while (index > 0) {
+			final int parent = (index - 1) / ARITY;
+			if (costs[parent] >= cost) {
+				break;
+			}
+
+			costs[index] = costs[parent];
+			items[index] = items[parent];
+			index = parent;
+		}
+
+		costs[index] = cost;
+		items[index] = item;
+	}
+
+	private void siftDown(int index, final double cost, final AgendaItem item) {
+		while (true) {
+			final int firstChild = index * ARITY + 1;
+			if (firstChild >= size) {
+				break;
+			}
+
+			// Find the child with the highest cost.
+			int bestChild = firstChild;
+			double bestCost = costs[firstChild];
+			final int lastChild = Math.min(firstChild + ARITY, size);
+			for (int child = firstChild + 1; child < lastChild; child++) {
+				if (costs[child] > bestCost) {
+					bestChild = child;
+					bestCost = costs[child];
+				}
+			}
+
+			if (cost >= bestCost) {
+				break;
+			}
+
+			costs[index] = bestCost;
+			items[index] = items[bestChild];
+			index = bestChild;
+		}
+
+		costs[index] = cost;
+		items[index] = item;
+	}
+
+	/**
+	 * Iterates over the items in no particular order.
+	 */
+	@Override
+	public Iterator<AgendaItem> iterator() {
+		return new Iterator<AgendaItem>() {
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return index < size;
+			}
+
+			@Override
+			public AgendaItem next() {
+				if (index >= size) {
+					throw new NoSuchElementException();
+				}
+				return items[index++];
+			}
+		};
+	}
+}
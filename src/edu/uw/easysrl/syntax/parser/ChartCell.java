@@ -1,20 +1,19 @@
 package edu.uw.easysrl.syntax.parser;
 
+import com.carrotsearch.hppc.IntIntHashMap;
 import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Table;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.PriorityQueue;
 
-import edu.uw.easysrl.dependencies.UnlabelledDependency;
 import edu.uw.easysrl.syntax.grammar.Category;
 import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode;
 import edu.uw.easysrl.syntax.model.AgendaItem;
@@ -25,7 +24,7 @@ abstract class ChartCell {
 	 * Possibly adds a @AgendaItem to this chart cell. Returns true if the parse was added, and false if the cell was
 	 * unchanged.
 	 */
-	public final boolean add(final AgendaItem entry) {
+	public boolean add(final AgendaItem entry) {
 		return add(entry.getEquivalenceClassKey(), entry);
 	}
 
@@ -179,73 +178,135 @@ abstract class ChartCell {
 	}
 
 	/**
-	 * Implements dependency hashing for better N-best parsing, as in Ng&Curran 2012
+	 * Keeps the N entries with the highest inside scores, without dividing them into equivalence classes, in a min-heap
+	 * so that the worst entry can be replaced. An item is rejected before its parse is built if it's no better than
+	 * the worst entry in a full cell, or if it's below the threshold. The threshold is relative to the best inside
+	 * score added so far, so entries that were added before a better one came along are removed by getEntries().
 	 */
-	public static class ChartCellNbestFactory extends ChartCellFactory {
+	static class CellBeam extends ChartCell {
+		private final PriorityQueue<AgendaItem> heap;
+		private final int beamSize;
+		private final double logThreshold;
+		private double bestScore = Double.NEGATIVE_INFINITY;
 
-		private final int nbest;
-		private final double nbestBeam;
+		/**
+		 * @param logThreshold
+		 *            Log of the ratio to the best inside score that entries need, or negative infinity for no threshold.
+		 */
+		CellBeam(final int beamSize, final double logThreshold) {
+			this.heap = new PriorityQueue<>(beamSize + 1, Comparator.comparingDouble(AgendaItem::getInsideScore));
+			this.beamSize = beamSize;
+			this.logThreshold = logThreshold;
+		}
 
-		public ChartCellNbestFactory(final int nbest, final double nbestBeam, final int maxSentenceLength,
-				final Collection<Category> categories) {
-			super();
-			this.nbest = nbest;
-			this.nbestBeam = nbestBeam;
-			final Random randomGenerator = new Random();
-
-			// Build a hash for every possible dependency
-			categoryToArgumentToHeadToModifierToHash = HashBasedTable.create();
-			for (final Category c : categories) {
-				for (int i = 1; i <= c.getNumberOfArguments(); i++) {
-					final int[][] array = new int[maxSentenceLength][maxSentenceLength];
-					categoryToArgumentToHeadToModifierToHash.put(c, i, array);
-					for (int head = 0; head < maxSentenceLength; head++) {
-						for (int child = 0; child < maxSentenceLength; child++) {
-							array[head][child] = randomGenerator.nextInt();
-						}
-					}
-				}
+		@Override
+		public boolean add(final AgendaItem entry) {
+			final double score = entry.getInsideScore();
+			if (score < bestScore + logThreshold || (heap.size() == beamSize && score <= heap.peek().getInsideScore())) {
+				return false;
 			}
+
+			heap.add(entry);
+			if (heap.size() > beamSize) {
+				heap.poll();
+			}
+			bestScore = Math.max(bestScore, score);
+			return true;
 		}
 
-		public ChartCellNbestFactory(ChartCellNbestFactory other) {
-			this.nbest = other.nbest;
-			this.nbestBeam = other.nbestBeam;
-			this.categoryToArgumentToHeadToModifierToHash = other.categoryToArgumentToHeadToModifierToHash;
+		@Override
+		public boolean add(final Object key, final AgendaItem entry) {
+			return add(entry);
 		}
 
-		// A cache of hash scores for nodes, to save recomputing them. I'm not in love with this design, but at least it
-		// keeps all the hashing code in one place.
-		private final Map<SyntaxTreeNode, Integer> nodeToHash = new HashMap<>();
-		private final Table<Category, Integer, int[][]> categoryToArgumentToHeadToModifierToHash;
+		@Override
+		public Collection<AgendaItem> getEntries() {
+			while (!heap.isEmpty() && heap.peek().getInsideScore() < bestScore + logThreshold) {
+				heap.poll();
+			}
+			return heap;
+		}
 
-		private int getHash(final SyntaxTreeNode parse) {
-			Integer result = nodeToHash.get(parse);
-			if (result == null) {
-				result = 0;
+		@Override
+		int size() {
+			return getEntries().size();
+		}
+	}
 
-				// Add in a hash for each dependency at this node.
-				final List<UnlabelledDependency> resolvedUnlabelledDependencies = parse
-						.getResolvedUnlabelledDependencies();
-				if (resolvedUnlabelledDependencies != null) {
-					for (final UnlabelledDependency dep : resolvedUnlabelledDependencies) {
-						for (final int arg : dep.getArguments()) {
-							if (dep.getHead() != arg) {
-								result = result
-										^ categoryToArgumentToHeadToModifierToHash.get(dep.getCategory(),
-												dep.getArgNumber())[dep.getHead()][arg];
-							}
-						}
+	/**
+	 * Wraps another cell, and groups the entries added to it by category ID. The A* parser uses this to look up the
+	 * rules for each pair of categories once, and to only pair up entries whose categories can combine, rather than
+	 * trying every pair of entries.
+	 */
+	static class CategoryIndexedCell extends ChartCell {
+		private final ChartCell cell;
+		private final IntIntHashMap categoryIDToIndex = new IntIntHashMap();
+		private final List<Category> categories = new ArrayList<>();
+		private final List<List<AgendaItem>> entriesForCategory = new ArrayList<>();
+
+		CategoryIndexedCell(final ChartCell cell) {
+			this.cell = cell;
+		}
 
-					}
-				}
+		@Override
+		public boolean add(final Object key, final AgendaItem entry) {
+			if (!cell.add(key, entry)) {
+				return false;
+			}
 
-				for (final SyntaxTreeNode child : parse.getChildren()) {
-					result = result ^ getHash(child);
-				}
+			final Category category = entry.getParse().getCategory();
+			final int index = categoryIDToIndex.getOrDefault(category.getID(), -1);
+			if (index == -1) {
+				categoryIDToIndex.put(category.getID(), categories.size());
+				categories.add(category);
+				final List<AgendaItem> entries = new ArrayList<>(2);
+				entries.add(entry);
+				entriesForCategory.add(entries);
+			} else {
+				entriesForCategory.get(index).add(entry);
 			}
 
-			return result;
+			return true;
+		}
+
+		@Override
+		public Iterable<AgendaItem> getEntries() {
+			return cell.getEntries();
+		}
+
+		/**
+		 * Categories of the entries, in the order they were first added.
+		 */
+		List<Category> getCategories() {
+			return categories;
+		}
+
+		/**
+		 * Entries with the i'th category from getCategories().
+		 */
+		List<AgendaItem> getEntries(final int i) {
+			return entriesForCategory.get(i);
+		}
+
+		@Override
+		int size() {
+			return cell.size();
+		}
+	}
+
+	/**
+	 * Implements dependency hashing for better N-best parsing, as in Ng&Curran 2012. The hashes are computed by
+	 * {@link SyntaxTreeNode#getDependencyHash()}, so the factory has no per-sentence state.
+	 */
+	public static class ChartCellNbestFactory extends ChartCellFactory {
+
+		private final int nbest;
+		private final double nbestBeam;
+
+		public ChartCellNbestFactory(final int nbest, final double nbestBeam) {
+			super();
+			this.nbest = nbest;
+			this.nbestBeam = nbestBeam;
 		}
 
 		/**
@@ -285,7 +346,7 @@ abstract class ChartCell {
 		 */
 		class CellNBestWithHashing extends ChartCell {
 			private final ListMultimap<Object, AgendaItem> keyToEntries = ArrayListMultimap.create();
-			private final Multimap<Object, Integer> keyToHash = HashMultimap.create();
+			private final Multimap<Object, Long> keyToHash = HashMultimap.create();
 
 			@Override
 			public Collection<AgendaItem> getEntries() {
@@ -300,7 +361,7 @@ abstract class ChartCell {
 						|| (existing.size() > 0 && newEntry.getCost() < nbestBeam * existing.get(0).getCost())) {
 					return false;
 				} else {
-					final Integer hash = getHash(newEntry.getParse());
+					final Long hash = newEntry.getParse().getDependencyHash();
 					if (keyToHash.containsEntry(key, hash)) {
 						// Already have an equivalent node.
 						return false;
@@ -308,9 +369,6 @@ abstract class ChartCell {
 
 					keyToEntries.put(key, newEntry);
 					keyToHash.put(key, hash);
-
-					// Cache out hash for this parse.
-					nodeToHash.put(newEntry.getParse(), hash);
 					return true;
 				}
 			}
@@ -326,11 +384,6 @@ abstract class ChartCell {
 			return // new CellNBest();
 			new CellNBestWithHashing();
 		}
-
-		@Override
-		public ChartCellFactory forNewSentence() {
-			return new ChartCellNbestFactory(this);
-		}
 	}
 
 }
\ No newline at end of file
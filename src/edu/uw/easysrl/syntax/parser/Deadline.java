@@ -0,0 +1,96 @@
+package edu.uw.easysrl.syntax.parser;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A time limit for parsing a sentence, which the parsers check in their main loops. A deadline can also be cancelled,
+ * for example from another thread, which makes it expire immediately.
+ *
+ * If a parser runs out of time before finding any parse, it throws an ExpiredException, so that callers can tell a
+ * sentence that timed out from one that has no parse (which returns null).
+ */
+public class Deadline {
+	/**
+	 * No time limit. Can't be cancelled, because it's shared.
+	 */
+	public final static Deadline NONE = new Deadline(false, 0L, null);
+
+	private final boolean hasTimeLimit;
+	private final long endNanos;
+	/**
+	 * Cancelling the parent also cancels this deadline.
+	 */
+	private final Deadline parent;
+	private volatile boolean cancelled = false;
+
+	private Deadline(final boolean hasTimeLimit, final long endNanos, final Deadline parent) {
+		this.hasTimeLimit = hasTimeLimit;
+		this.endNanos = endNanos;
+		this.parent = parent;
+	}
+
+	/**
+	 * A deadline the given time from now.
+	 */
+	public static Deadline after(final long time, final TimeUnit unit) {
+		return new Deadline(true, System.nanoTime() + unit.toNanos(time), null);
+	}
+
+	/**
+	 * A deadline which only expires when cancelled.
+	 */
+	public static Deadline cancellable() {
+		return new Deadline(false, 0L, null);
+	}
+
+	/**
+	 * A deadline for part of the work: it expires after the given fraction of this deadline's remaining time, or when
+	 * this deadline is cancelled.
+	 */
+	public Deadline fraction(final double fraction) {
+		if (!hasTimeLimit) {
+			return new Deadline(false, 0L, this);
+		}
+
+		return new Deadline(true, System.nanoTime() + (long) (fraction * remaining(TimeUnit.NANOSECONDS)), this);
+	}
+
+	public void cancel() {
+		if (this == NONE) {
+			throw new UnsupportedOperationException("Deadline.NONE can't be cancelled");
+		}
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled || (parent != null && parent.isCancelled());
+	}
+
+	public boolean isExpired() {
+		return isCancelled() || (hasTimeLimit && System.nanoTime() - endNanos >= 0);
+	}
+
+	/**
+	 * Time left before the deadline, or Long.MAX_VALUE if there's no time limit.
+	 */
+	public long remaining(final TimeUnit unit) {
+		if (isCancelled()) {
+			return 0L;
+		} else if (!hasTimeLimit) {
+			return Long.MAX_VALUE;
+		}
+
+		return unit.convert(Math.max(0L, endNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Thrown when a parser runs out of time without finding a parse.
+	 */
+	public static class ExpiredException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		public ExpiredException(final String message) {
+			super(message);
+		}
+	}
+}
@@ -0,0 +1,401 @@
+package edu.uw.easysrl.syntax.parser;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.carrotsearch.hppc.LongHashSet;
+
+import edu.uw.easysrl.syntax.grammar.Category;
+import edu.uw.easysrl.syntax.grammar.Combinator.RuleProduction;
+import edu.uw.easysrl.syntax.grammar.Combinator.RuleType;
+import edu.uw.easysrl.syntax.grammar.NormalForm;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode.SyntaxTreeNodeBinary;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode.SyntaxTreeNodeUnary;
+import edu.uw.easysrl.syntax.model.AgendaItem;
+import edu.uw.easysrl.syntax.model.Model;
+import edu.uw.easysrl.syntax.parser.AbstractParser.UnaryRule;
+import edu.uw.easysrl.util.Util.Scored;
+
+/**
+ * Lazy k-best extraction (Huang and Chiang, 2005, Algorithm 3) from the 1-best chart of an A* parse.
+ *
+ * Each chart entry is a vertex of a hypergraph. Its incoming hyperedges are all the items built for the same cell and
+ * equivalence key: the entry itself, items that were rejected when they came off the agenda because the key was
+ * already taken, and items still on the agenda that could be in the N-best list. The k'th best derivation of a vertex
+ * is only built when something asks for it, so N-best parsing costs a 1-best parse, plus a little for each extra
+ * parse.
+ *
+ * Vertices are limited to what the 1-best search explored, except that complete parses still on the agenda are added
+ * as extra roots. With dependencies, derivations with the same dependencies are only returned once, using the same
+ * dependency hashes as N-best chart cells.
+ */
+class KBestExtractor {
+	private final ParserAStar parser;
+	private final Model model;
+	private final int sentenceLength;
+	/**
+	 * If true, derivations with the same dependency hash are only returned once.
+	 */
+	private final boolean usingDependencies;
+
+	/**
+	 * Vertices for each cell, indexed by start * sentenceLength + spanLength - 1, and then by equivalence key.
+	 */
+	private final List<Map<Object, Vertex>> cells;
+	private final Map<SyntaxTreeNode, Vertex> nodeToVertex = new IdentityHashMap<>();
+	/**
+	 * Items that came off the agenda after their key was already in the chart.
+	 */
+	private final List<AgendaItem> rejectedItems = new ArrayList<>();
+
+	KBestExtractor(final ParserAStar parser, final Model model, final int sentenceLength,
+			final boolean usingDependencies) {
+		this.parser = parser;
+		this.model = model;
+		this.sentenceLength = sentenceLength;
+		this.usingDependencies = usingDependencies;
+		this.cells = new ArrayList<>(sentenceLength * sentenceLength);
+		for (int i = 0; i < sentenceLength * sentenceLength; i++) {
+			cells.add(null);
+		}
+	}
+
+	/**
+	 * Called when an item is added to the chart.
+	 */
+	void addEntry(final AgendaItem entry) {
+		final Vertex vertex = new Vertex();
+		final int index = entry.getStartOfSpan() * sentenceLength + entry.getSpanLength() - 1;
+		Map<Object, Vertex> cell = cells.get(index);
+		if (cell == null) {
+			cell = new HashMap<>();
+			cells.set(index, cell);
+		}
+
+		cell.put(entry.getEquivalenceClassKey(), vertex);
+		nodeToVertex.put(entry.getParse(), vertex);
+		vertex.entry = new Edge(entry);
+		vertex.edges.add(vertex.entry);
+	}
+
+	/**
+	 * Called when an item comes off the agenda, but its key is already in the chart.
+	 */
+	void addRejectedItem(final AgendaItem item) {
+		rejectedItems.add(item);
+	}
+
+	/**
+	 * Returns up to nbest parses, with probabilities at least nbestBeam times the probability of the best parse.
+	 *
+	 * @param agenda
+	 *            Items left on the agenda, which may be extra hyperedges.
+	 * @param deadline
+	 *            If it expires, the parses found so far are returned, which may be none.
+	 */
+	List<Scored<SyntaxTreeNode>> getNbest(final Agenda agenda, final double bestScore, final int nbest,
+			final double nbestBeam, final Collection<Category> possibleRootCategories, final Deadline deadline) {
+		final double threshold = bestScore + Math.log(nbestBeam);
+
+		final Map<Object, Vertex> extraRoots = new HashMap<>();
+		addEdges(rejectedItems, threshold, extraRoots);
+		addEdges(agenda, threshold, extraRoots);
+
+		// Merge the derivations of each root vertex.
+		final PriorityQueue<RootCandidate> roots = new PriorityQueue<>();
+		final Map<Object, Vertex> rootCell = cells.get(sentenceLength - 1);
+		final List<Vertex> rootVertices = new ArrayList<>(extraRoots.values());
+		if (rootCell != null) {
+			rootVertices.addAll(rootCell.values());
+		}
+		for (final Vertex root : rootVertices) {
+			final AgendaItem best = root.getDerivation(0);
+			if (best != null && (possibleRootCategories.isEmpty() || possibleRootCategories.contains(best.getParse()
+					.getCategory()))) {
+				roots.add(new RootCandidate(root, 0, best));
+			}
+		}
+
+		final List<Scored<SyntaxTreeNode>> result = new ArrayList<>(nbest);
+		final LongHashSet seenHashes = new LongHashSet();
+		while (result.size() < nbest && !roots.isEmpty() && !deadline.isExpired()) {
+			final RootCandidate candidate = roots.poll();
+			if (candidate.derivation.getInsideScore() < threshold) {
+				break;
+			}
+
+			if (!usingDependencies || seenHashes.add(candidate.derivation.getParse().getDependencyHash())) {
+				result.add(new Scored<>(candidate.derivation.getParse(), candidate.derivation.getInsideScore()));
+			}
+
+			final AgendaItem next = candidate.vertex.getDerivation(candidate.rank + 1);
+			if (next != null) {
+				roots.add(new RootCandidate(candidate.vertex, candidate.rank + 1, next));
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Adds the items that could be in a parse within the beam as edges. An item's cost is an upper bound on the score
+	 * of any parse using it, so cheaper items can be ignored without building their nodes.
+	 */
+	private void addEdges(final Iterable<AgendaItem> items, final double threshold,
+			final Map<Object, Vertex> extraRoots) {
+		for (final AgendaItem item : items) {
+			if (item.getCost() < threshold || item.getInsideScore() == Double.NEGATIVE_INFINITY) {
+				continue;
+			}
+
+			final Object key = item.getEquivalenceClassKey();
+			final Map<Object, Vertex> cell = cells.get(item.getStartOfSpan() * sentenceLength + item.getSpanLength()
+					- 1);
+			Vertex vertex = cell == null ? null : cell.get(key);
+			if (vertex == null && item.getSpanLength() == sentenceLength) {
+				// A complete parse that the search didn't get to.
+				vertex = extraRoots.computeIfAbsent(key, k -> new Vertex());
+			}
+
+			if (vertex != null) {
+				vertex.edges.add(new Edge(item));
+			}
+		}
+	}
+
+	private final static Comparator<AgendaItem> BEST_FIRST = (a, b) -> Double.compare(b.getInsideScore(),
+			a.getInsideScore());
+
+	/**
+	 * An equivalence class in a chart cell, with its derivations in order of score.
+	 */
+	private class Vertex {
+		/**
+		 * The edge of the entry in the chart, or null for roots that weren't in the chart.
+		 */
+		private Edge entry;
+		private final List<Edge> edges = new ArrayList<>(1);
+		private final List<AgendaItem> derivations = new ArrayList<>();
+		private final LongHashSet seenHashes = new LongHashSet();
+		private PriorityQueue<Candidate> candidates;
+		/**
+		 * The last candidate taken, whose successors haven't been added yet.
+		 */
+		private Candidate last;
+		/**
+		 * Guards against cycles of unary rules.
+		 */
+		private boolean inProgress = false;
+
+		private void addDerivation(final AgendaItem derivation) {
+			if (!usingDependencies || seenHashes.add(derivation.getParse().getDependencyHash())) {
+				derivations.add(derivation);
+			}
+		}
+
+		/**
+		 * The k'th best derivation (from 0), or null if there are fewer than k + 1.
+		 */
+		private AgendaItem getDerivation(final int k) {
+			if (k < derivations.size()) {
+				return derivations.get(k);
+			} else if (inProgress) {
+				return null;
+			}
+
+			inProgress = true;
+			if (candidates == null) {
+				// The best derivation of each edge is the item itself.
+				candidates = new PriorityQueue<>(edges.size());
+				for (final Edge edge : edges) {
+					edge.seen.add(0L);
+					final Candidate candidate = new Candidate(edge, 0, 0, edge.item);
+					if (edge == entry) {
+						// Entries in the chart were built from the entries of their children, so the entry must be
+						// the first derivation, even if another edge's item has the same score.
+						last = candidate;
+						addDerivation(candidate.derivation);
+					} else {
+						candidates.add(candidate);
+					}
+				}
+			}
+
+			while (derivations.size() <= k) {
+				if (last != null) {
+					last.edge.addSuccessors(last, candidates);
+					last = null;
+				}
+
+				final Candidate candidate = candidates.poll();
+				if (candidate == null) {
+					break;
+				}
+
+				last = candidate;
+				addDerivation(candidate.derivation);
+			}
+
+			inProgress = false;
+			return k < derivations.size() ? derivations.get(k) : null;
+		}
+	}
+
+	/**
+	 * A way of building a vertex: a rule applied to one or two child vertices.
+	 */
+	private class Edge {
+		/**
+		 * The best derivation using this edge.
+		 */
+		private final AgendaItem item;
+		private final Vertex left;
+		private final Vertex right;
+		private final RuleProduction production;
+		private final UnaryRule unaryRule;
+		/**
+		 * Ranks of the child derivations already used, as (left << 32 | right).
+		 */
+		private final LongHashSet seen = new LongHashSet();
+
+		private Edge(final AgendaItem item) {
+			this.item = item;
+			final SyntaxTreeNode parse = item.getParse();
+			final List<SyntaxTreeNode> children = parse.getChildren();
+			if (parse instanceof SyntaxTreeNodeBinary) {
+				this.left = nodeToVertex.get(children.get(0));
+				this.right = nodeToVertex.get(children.get(1));
+				this.production = findProduction(parse, children.get(0).getCategory(), children.get(1).getCategory());
+				this.unaryRule = null;
+			} else if (parse instanceof SyntaxTreeNodeUnary) {
+				this.left = nodeToVertex.get(children.get(0));
+				this.right = null;
+				this.production = null;
+				this.unaryRule = ((SyntaxTreeNodeUnary) parse).getUnaryRule();
+			} else {
+				// Lexical entry.
+				this.left = null;
+				this.right = null;
+				this.production = null;
+				this.unaryRule = null;
+			}
+		}
+
+		private RuleProduction findProduction(final SyntaxTreeNode parse, final Category left, final Category right) {
+			for (final RuleProduction production : parser.getRules(left, right)) {
+				if (production.getRuleType() == parse.getRuleType()
+						&& production.getCategory().equals(parse.getCategory())) {
+					return production;
+				}
+			}
+			return null;
+		}
+
+		private boolean hasChildren() {
+			return left != null && (unaryRule != null || (right != null && production != null));
+		}
+
+		/**
+		 * Adds the candidates that use the next derivation of one of the children of the given candidate.
+		 */
+		private void addSuccessors(final Candidate candidate, final PriorityQueue<Candidate> candidates) {
+			if (!hasChildren()) {
+				return;
+			}
+
+			addSuccessor(candidate.leftRank + 1, candidate.rightRank, candidates);
+			if (right != null) {
+				addSuccessor(candidate.leftRank, candidate.rightRank + 1, candidates);
+			}
+		}
+
+		private void addSuccessor(final int leftRank, final int rightRank, final PriorityQueue<Candidate> candidates) {
+			if (!seen.add(((long) leftRank << 32) | rightRank)) {
+				return;
+			}
+
+			final AgendaItem leftDerivation = left.getDerivation(leftRank);
+			final AgendaItem rightDerivation = right == null ? null : right.getDerivation(rightRank);
+			if (leftDerivation == null || (right != null && rightDerivation == null)) {
+				return;
+			}
+
+			final AgendaItem derivation = right == null ? makeUnary(leftDerivation) : makeBinary(leftDerivation,
+					rightDerivation);
+			final Candidate successor = new Candidate(this, leftRank, rightRank, derivation);
+			if (derivation == null) {
+				// Blocked by normal-form constraints, but its successors may not be.
+				addSuccessors(successor, candidates);
+			} else {
+				candidates.add(successor);
+			}
+		}
+
+		private AgendaItem makeBinary(final AgendaItem leftDerivation, final AgendaItem rightDerivation) {
+			final SyntaxTreeNode leftChild = leftDerivation.getParse();
+			final SyntaxTreeNode rightChild = rightDerivation.getParse();
+			if (!NormalForm.isOk(leftChild.getRuleClass(), rightChild.getRuleClass(), production,
+					leftDerivation.getStartOfSpan() == 0)) {
+				return null;
+			}
+
+			return model.combineNodes(leftDerivation, rightDerivation, parser.makeBinaryNode(leftChild, rightChild,
+					production));
+		}
+
+		private AgendaItem makeUnary(final AgendaItem childDerivation) {
+			final SyntaxTreeNode child = childDerivation.getParse();
+			if (!unaryRule.isTypeRaising() && (child.getRuleType() == RuleType.LP || child.getRuleType() == RuleType.RP)) {
+				return null;
+			}
+
+			return model.unary(childDerivation, parser.makeUnaryNode(child, unaryRule), unaryRule);
+		}
+	}
+
+	/**
+	 * A derivation of a vertex, using the given ranks of the derivations of the edge's children.
+	 */
+	private static class Candidate implements Comparable<Candidate> {
+		private final Edge edge;
+		private final int leftRank;
+		private final int rightRank;
+		private final AgendaItem derivation;
+
+		private Candidate(final Edge edge, final int leftRank, final int rightRank, final AgendaItem derivation) {
+			this.edge = edge;
+			this.leftRank = leftRank;
+			this.rightRank = rightRank;
+			this.derivation = derivation;
+		}
+
+		@Override
+		public int compareTo(final Candidate other) {
+			return BEST_FIRST.compare(derivation, other.derivation);
+		}
+	}
+
+	private static class RootCandidate implements Comparable<RootCandidate> {
+		private final Vertex vertex;
+		private final int rank;
+		private final AgendaItem derivation;
+
+		private RootCandidate(final Vertex vertex, final int rank, final AgendaItem derivation) {
+			this.vertex = vertex;
+			this.rank = rank;
+			this.derivation = derivation;
+		}
+
+		@Override
+		public int compareTo(final RootCandidate other) {
+			return BEST_FIRST.compare(derivation, other.derivation);
+		}
+	}
+}
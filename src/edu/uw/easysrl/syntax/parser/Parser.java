@@ -19,6 +19,12 @@ public interface Parser {
 
 	public abstract List<Scored<SyntaxTreeNode>> doParsing(InputToParser input);
 
+	/**
+	 * Parses the input, giving up when the deadline expires. Throws a Deadline.ExpiredException if it runs out of time
+	 * without finding a parse, and returns null if there is no parse.
+	 */
+	public abstract List<Scored<SyntaxTreeNode>> doParsing(InputToParser input, Deadline deadline);
+
 	public abstract int getMaxSentenceLength();
 
 	public abstract Multimap<Category, UnaryRule> getUnaryRules();
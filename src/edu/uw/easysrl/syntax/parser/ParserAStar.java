@@ -3,8 +3,9 @@ package edu.uw.easysrl.syntax.parser;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.PriorityQueue;
 
 import edu.uw.easysrl.dependencies.DependencyStructure;
 import edu.uw.easysrl.dependencies.UnlabelledDependency;
@@ -20,6 +21,7 @@ import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode.SyntaxTreeNodeUnary;
 import edu.uw.easysrl.syntax.model.AgendaItem;
 import edu.uw.easysrl.syntax.model.Model;
 import edu.uw.easysrl.syntax.model.Model.ModelFactory;
+import edu.uw.easysrl.syntax.parser.ChartCell.CategoryIndexedCell;
 import edu.uw.easysrl.syntax.parser.ChartCell.Cell1Best;
 import edu.uw.easysrl.syntax.parser.ChartCell.Cell1BestTreeBased;
 import edu.uw.easysrl.syntax.parser.ChartCell.CellNoDynamicProgram;
@@ -35,19 +37,60 @@ public class ParserAStar extends AbstractParser {
 	private final int maxChartSize;
 	private final ChartCellFactory cellFactory;
 	private final boolean usingDependencies;
+	private final boolean lazyAgenda;
+	private final boolean partialParses;
+	private final boolean lazyNbest;
+	/**
+	 * Agendas are reused for each sentence parsed on a thread, so that they don't need to grow again each time.
+	 */
+	private final ThreadLocal<Agenda> agendas = ThreadLocal.withInitial(() -> new Agenda(1000));
 
 	public ParserAStar(final ModelFactory modelFactory, final int maxSentenceLength, final int nbest,
 			final List<Category> validRootCategories, final File modelFolder, final int maxChartSize)
 					throws IOException {
+		this(modelFactory, maxSentenceLength, nbest, validRootCategories, modelFolder, maxChartSize, true);
+	}
+
+	public ParserAStar(final ModelFactory modelFactory, final int maxSentenceLength, final int nbest,
+			final List<Category> validRootCategories, final File modelFolder, final int maxChartSize,
+			final boolean lazyAgenda) throws IOException {
+		this(modelFactory, maxSentenceLength, nbest, validRootCategories, modelFolder, maxChartSize, lazyAgenda,
+				false);
+	}
+
+	public ParserAStar(final ModelFactory modelFactory, final int maxSentenceLength, final int nbest,
+			final List<Category> validRootCategories, final File modelFolder, final int maxChartSize,
+			final boolean lazyAgenda, final boolean partialParses) throws IOException {
+		this(modelFactory, maxSentenceLength, nbest, validRootCategories, modelFolder, maxChartSize, lazyAgenda,
+				partialParses, false);
+	}
+
+	/**
+	 * @param lazyAgenda
+	 *            If true, new nodes are only built when they are taken off the agenda, for models which can score
+	 *            them without the node.
+	 * @param partialParses
+	 *            If true, when the chart is full or the deadline expires before a parse is found, returns the
+	 *            fragments found so far instead of failing. See getBestFragmentCover().
+	 * @param lazyNbest
+	 *            If true, N-best parsing finds the best parse with a 1-best chart, and then extracts the other parses
+	 *            from it with a {@link KBestExtractor}, rather than keeping N entries per equivalence class.
+	 */
+	public ParserAStar(final ModelFactory modelFactory, final int maxSentenceLength, final int nbest,
+			final List<Category> validRootCategories, final File modelFolder, final int maxChartSize,
+			final boolean lazyAgenda, final boolean partialParses, final boolean lazyNbest) throws IOException {
 		super(TaggerEmbeddings.loadCategories(new File(modelFolder, "categories")), maxSentenceLength, nbest,
 				validRootCategories, modelFolder);
 		this.modelFactory = modelFactory;
 		this.maxChartSize = maxChartSize;
+		this.lazyAgenda = lazyAgenda;
+		this.partialParses = partialParses;
 		this.usingDependencies = modelFactory.isUsingDependencies();
+		this.lazyNbest = lazyNbest && nbest > 1 && modelFactory.isUsingDynamicProgram();
 		if (!modelFactory.isUsingDynamicProgram()) {
 			this.cellFactory = CellNoDynamicProgram.factory();
-		} else if (nbest > 1) {
-			this.cellFactory = new ChartCellNbestFactory(nbest, nbestBeam, maxSentenceLength, super.lexicalCategories);
+		} else if (nbest > 1 && !this.lazyNbest) {
+			this.cellFactory = new ChartCellNbestFactory(nbest, nbestBeam);
 		} else if (modelFactory.isUsingDependencies()) {
 			this.cellFactory = Cell1Best.factory();
 		} else {
@@ -56,22 +99,34 @@ public class ParserAStar extends AbstractParser {
 	}
 
 	@Override
-	List<Scored<SyntaxTreeNode>> parseAstar(final InputToParser input) {
+	List<Scored<SyntaxTreeNode>> parseAstar(final InputToParser input, final Deadline deadline) {
+		final Agenda agenda = agendas.get();
+		agenda.clear();
+		try {
+			return parseAstar(input, deadline, agenda);
+		} finally {
+			// Keeps the agenda's arrays for the next sentence, but not the items, even if parsing failed with an
+			// exception.
+			agenda.clear();
+		}
+	}
+
+	private List<Scored<SyntaxTreeNode>> parseAstar(final InputToParser input, final Deadline deadline,
+			final Agenda agenda) {
 		ChartCellFactory sentenceCellFactory = cellFactory.forNewSentence();
 		final List<InputWord> sentence = input.getInputWords();
 		final Model model = modelFactory.make(input);
 		final int sentenceLength = sentence.size();
-		final PriorityQueue<AgendaItem> agenda = new PriorityQueue<>(1000);
 		model.buildAgenda(agenda, sentence);
-		final ChartCell[][] chart = new ChartCell[sentenceLength][sentenceLength];
+		final CategoryIndexedCell[][] chart = new CategoryIndexedCell[sentenceLength][sentenceLength];
 
 		final List<Scored<SyntaxTreeNode>> result = new ArrayList<>(nbest);
 		int chartSize = 0;
 
 		// Track which cells in the chart are non-empty. This is helpful, because the A* chart is very sparse compared
 		// to CKY charts.
-		final List<List<ChartCell>> cellsStartingAt = new ArrayList<>(sentenceLength + 1);
-		final List<List<ChartCell>> cellsEndingAt = new ArrayList<>(sentenceLength + 1);
+		final List<List<CategoryIndexedCell>> cellsStartingAt = new ArrayList<>(sentenceLength + 1);
+		final List<List<CategoryIndexedCell>> cellsEndingAt = new ArrayList<>(sentenceLength + 1);
 		for (int i = 0; i < sentenceLength + 1; i++) {
 			cellsStartingAt.add(new ArrayList<>());
 			cellsEndingAt.add(new ArrayList<>());
@@ -79,21 +134,33 @@ public class ParserAStar extends AbstractParser {
 
 		// Dummy final cell that the complete parses are stored in.
 		final ChartCell finalCell = sentenceCellFactory.make();
+		boolean timedOut = false;
+
+		// For lazy N-best parsing, the search stops at the best parse, and the others are extracted afterwards.
+		final KBestExtractor kbest = lazyNbest ? new KBestExtractor(this, model, sentenceLength, usingDependencies)
+				: null;
+		final int nbestToSearch = lazyNbest ? 1 : nbest;
 
 		while (chartSize < maxChartSize
-				&& (result.isEmpty() || (result.size() < nbest && !agenda.isEmpty() && agenda.peek().getCost() > nbestBeam
-						* result.get(0).getScore()))) {
+				&& (result.isEmpty() || (result.size() < nbestToSearch && !agenda.isEmpty() && agenda.peekCost()
+						> nbestBeam * result.get(0).getScore()))) {
 			// Add items from the agenda, until we have enough parses.
 
+			if (deadline.isExpired()) {
+				// Out of time. Any parses already found (for N-best parsing) are still returned.
+				timedOut = true;
+				break;
+			}
+
 			final AgendaItem agendaItem = agenda.poll();
 			if (agendaItem == null) {
 				break;
 			}
 
 			// Try to put an entry in the chart.
-			ChartCell cell = chart[agendaItem.getStartOfSpan()][agendaItem.getSpanLength() - 1];
+			CategoryIndexedCell cell = chart[agendaItem.getStartOfSpan()][agendaItem.getSpanLength() - 1];
 			if (cell == null) {
-				cell = sentenceCellFactory.make();
+				cell = new CategoryIndexedCell(sentenceCellFactory.make());
 				chart[agendaItem.getStartOfSpan()][agendaItem.getSpanLength() - 1] = cell;
 				cellsStartingAt.get(agendaItem.getStartOfSpan()).add(cell);
 				cellsEndingAt.get(agendaItem.getStartOfSpan() + agendaItem.getSpanLength()).add(cell);
@@ -101,6 +168,9 @@ public class ParserAStar extends AbstractParser {
 
 			if (cell.add(agendaItem)) {
 				chartSize++;
+				if (kbest != null) {
+					kbest.addEntry(agendaItem);
+				}
 				// If a new entry was added, update the agenda.
 
 				// Is the new entry an acceptable complete parse?
@@ -117,25 +187,64 @@ public class ParserAStar extends AbstractParser {
 				// See if any Unary Rules can be applied to the new entry.
 				updateAgendaUnary(model, agendaItem, agenda);
 
-				// See if the new entry can be the left argument of any binary rules.
-				for (final ChartCell rightCell : cellsStartingAt.get(agendaItem.getStartOfSpan()
+				// See if the new entry can be the left argument of any binary rules. Entries in the neighbouring cells
+				// are grouped by category, so the rules only need to be looked up once per category.
+				final Category category = agendaItem.getParse().getCategory();
+				for (final CategoryIndexedCell rightCell : cellsStartingAt.get(agendaItem.getStartOfSpan()
 						+ agendaItem.getSpanLength())) {
-					for (final AgendaItem rightEntry : rightCell.getEntries()) {
-						updateAgenda(agenda, agendaItem, rightEntry, model);
+					final List<Category> rightCategories = rightCell.getCategories();
+					for (int i = 0; i < rightCategories.size(); i++) {
+						final List<RuleProduction> rules = getRules(category, rightCategories.get(i));
+						if (!rules.isEmpty()) {
+							for (final AgendaItem rightEntry : rightCell.getEntries(i)) {
+								updateAgenda(agenda, agendaItem, rightEntry, rules, model);
+							}
+						}
 					}
 				}
 
 				// See if the new entry can be the right argument of any binary
 				// rules.
-				for (final ChartCell leftCell : cellsEndingAt.get(agendaItem.getStartOfSpan())) {
-					for (final AgendaItem leftEntry : leftCell.getEntries()) {
-						updateAgenda(agenda, leftEntry, agendaItem, model);
+				for (final CategoryIndexedCell leftCell : cellsEndingAt.get(agendaItem.getStartOfSpan())) {
+					final List<Category> leftCategories = leftCell.getCategories();
+					for (int i = 0; i < leftCategories.size(); i++) {
+						final List<RuleProduction> rules = getRules(leftCategories.get(i), category);
+						if (!rules.isEmpty()) {
+							for (final AgendaItem leftEntry : leftCell.getEntries(i)) {
+								updateAgenda(agenda, leftEntry, agendaItem, rules, model);
+							}
+						}
 					}
 				}
+			} else if (kbest != null) {
+				// Another way of building an entry that's already in the chart.
+				kbest.addRejectedItem(agendaItem);
+			}
+		}
+
+		if (kbest != null && !result.isEmpty() && !timedOut) {
+			// If the deadline expires during extraction, the parses found so far are used, or else the best parse.
+			final List<Scored<SyntaxTreeNode>> parses = kbest.getNbest(agenda, result.get(0).getScore(), nbest,
+					nbestBeam, possibleRootCategories, deadline);
+			if (!parses.isEmpty()) {
+				result.clear();
+				result.addAll(parses);
+			}
+		}
+
+		if (result.isEmpty() && partialParses && (timedOut || chartSize >= maxChartSize)) {
+			// Rather than throwing away the work, return the fragments built so far.
+			final Scored<SyntaxTreeNode> fragments = getBestFragmentCover(chart, agenda, sentenceLength);
+			if (fragments != null) {
+				result.add(fragments);
 			}
 		}
 
 		if (result.size() == 0) {
+			if (timedOut) {
+				throw new Deadline.ExpiredException("Timed out parsing sentence of length " + sentenceLength);
+			}
+
 			// Parse failure.
 			return null;
 		}
@@ -144,87 +253,166 @@ public class ParserAStar extends AbstractParser {
 
 	}
 
+	/**
+	 * Finds the cover of the sentence with the fewest fragments from the chart, breaking ties by inside score, and
+	 * joins the fragments from left to right with NOISE rules. Each fragment keeps its own dependencies. Words with no
+	 * entry in the chart use their best lexical entry from the agenda.
+	 *
+	 * Returns null if some word has no entries at all.
+	 */
+	private Scored<SyntaxTreeNode> getBestFragmentCover(final ChartCell[][] chart, final Agenda agenda,
+			final int sentenceLength) {
+		final AgendaItem[] bestOnAgenda = new AgendaItem[sentenceLength];
+		for (final AgendaItem item : agenda) {
+			final int start = item.getStartOfSpan();
+			if (item.getSpanLength() == 1 && isBetter(item, bestOnAgenda[start])) {
+				bestOnAgenda[start] = item;
+			}
+		}
+
+		// Viterbi search over the fragments ending at each word.
+		final int[] fragmentsUpTo = new int[sentenceLength + 1];
+		final double[] scoreUpTo = new double[sentenceLength + 1];
+		final AgendaItem[] lastFragment = new AgendaItem[sentenceLength + 1];
+		Arrays.fill(fragmentsUpTo, Integer.MAX_VALUE);
+		fragmentsUpTo[0] = 0;
+		for (int end = 1; end <= sentenceLength; end++) {
+			for (int start = 0; start < end; start++) {
+				if (fragmentsUpTo[start] == Integer.MAX_VALUE) {
+					continue;
+				}
+
+				AgendaItem fragment = getBestEntry(chart[start][end - start - 1]);
+				if (fragment == null && end - start == 1) {
+					fragment = bestOnAgenda[start];
+				}
+				if (fragment == null) {
+					continue;
+				}
+
+				final int fragments = fragmentsUpTo[start] + 1;
+				final double score = scoreUpTo[start] + fragment.getInsideScore();
+				if (fragments < fragmentsUpTo[end] || (fragments == fragmentsUpTo[end] && score > scoreUpTo[end])) {
+					fragmentsUpTo[end] = fragments;
+					scoreUpTo[end] = score;
+					lastFragment[end] = fragment;
+				}
+			}
+		}
+
+		if (lastFragment[sentenceLength] == null) {
+			return null;
+		}
+
+		final List<SyntaxTreeNode> fragments = new ArrayList<>();
+		for (int end = sentenceLength; end > 0; end = lastFragment[end].getStartOfSpan()) {
+			fragments.add(lastFragment[end].getParse());
+		}
+		Collections.reverse(fragments);
+
+		SyntaxTreeNode result = fragments.get(0);
+		for (int i = 1; i < fragments.size(); i++) {
+			result = new SyntaxTreeNodeBinary(result.getCategory(), result, fragments.get(i), RuleType.NOISE, true,
+					result.getDependencyStructure(), Collections.emptyList());
+		}
+
+		return new Scored<>(result, scoreUpTo[sentenceLength]);
+	}
+
+	private static AgendaItem getBestEntry(final ChartCell cell) {
+		if (cell == null) {
+			return null;
+		}
+
+		AgendaItem result = null;
+		for (final AgendaItem entry : cell.getEntries()) {
+			if (isBetter(entry, result)) {
+				result = entry;
+			}
+		}
+		return result;
+	}
+
+	private static boolean isBetter(final AgendaItem item, final AgendaItem best) {
+		return item.getInsideScore() > Double.NEGATIVE_INFINITY
+				&& (best == null || item.getInsideScore() > best.getInsideScore());
+	}
+
 	/**
 	 * Updates the agenda with of any unary rules that can be applied.
 	 */
-	private void updateAgendaUnary(final Model model, final AgendaItem newItem, final PriorityQueue<AgendaItem> agenda) {
+	private void updateAgendaUnary(final Model model, final AgendaItem newItem, final Agenda agenda) {
 		final SyntaxTreeNode parse = newItem.getParse();
-		final List<UnaryRule> ruleProductions = unaryRules.get(parse.getCategory());
+		// Don't allow unary rules to apply to the output of non-type-raising rules.
+		// i.e. don't allow both (NP (N ,))
+		// The reason for allowing type-raising is to simplify Eisner Normal Form contraints (a
+		// punctuation rule would mask the fact that a rule is the output of type-raising).
+		// TODO should probably refactor the constraint into NormalForm.
+		final List<UnaryRule> ruleProductions = unaryRuleTable.getRules(parse);
 		final int size = ruleProductions.size();
-		if (size == 0) {
-			return;
-		}
-
-		final boolean isNotPunctuationNode = parse.getRuleType() != RuleType.LP && parse.getRuleType() != RuleType.RP;
 		for (int i = 0; i < size; i++) {
 			final UnaryRule unaryRule = ruleProductions.get(i);
-			if (isNotPunctuationNode || unaryRule.isTypeRaising()) {
-				// Don't allow unary rules to apply to the output of non-type-raising rules.
-				// i.e. don't allow both (NP (N ,))
-				// The reason for allowing type-raising is to simplify Eisner Normal Form contraints (a
-				// punctuation rule would mask the fact that a rule is the output of type-raising).
-				// TODO should probably refactor the constraint into NormalForm.
-
-				SyntaxTreeNodeUnary newNode;
-
-				if (usingDependencies) {
-					final List<UnlabelledDependency> resolvedDependencies = new ArrayList<>();
-					newNode = new SyntaxTreeNodeUnary(unaryRule.getResult(), parse, unaryRule
-							.getDependencyStructureTransformation().apply(parse.getDependencyStructure(),
-									resolvedDependencies), unaryRule, resolvedDependencies);
-				} else {
-					newNode = new SyntaxTreeNodeUnary(unaryRule.getResult(), parse, null, unaryRule, null);
-				}
-
-				agenda.add(model.unary(newItem, newNode, unaryRule));
+			if (lazyAgenda) {
+				agenda.add(model.unary(newItem, () -> makeUnaryNode(parse, unaryRule), unaryRule));
+			} else {
+				agenda.add(model.unary(newItem, makeUnaryNode(parse, unaryRule), unaryRule));
 			}
 		}
 	}
 
 	/**
-	 * Updates the agenda with the result of all combinators that can be applied to leftChild and rightChild.
+	 * Updates the agenda with the result of all the rules that can be applied to leftChild and rightChild.
 	 */
-	private void updateAgenda(final PriorityQueue<AgendaItem> agenda, final AgendaItem left, final AgendaItem right,
-			final Model model) {
+	private void updateAgenda(final Agenda agenda, final AgendaItem left, final AgendaItem right,
+			final List<RuleProduction> rules, final Model model) {
 
 		final SyntaxTreeNode leftChild = left.getParse();
 		final SyntaxTreeNode rightChild = right.getParse();
 
-		if (!seenRules.isSeen(leftChild.getCategory(), rightChild.getCategory())) {
-			return;
-		}
-		final List<RuleProduction> rules = getRules(leftChild.getCategory(), rightChild.getCategory());
-
 		final int size = rules.size();
 		for (int i = 0; i < size; i++) {
 			final RuleProduction production = rules.get(i);
 			// Check if normal-form constraints let us add this rule.
-			if (NormalForm.isOk(leftChild.getRuleClass(), rightChild.getRuleClass(), production.getRuleType(),
-					leftChild.getCategory(), rightChild.getCategory(), production.getCategory(),
+			if (NormalForm.isOk(leftChild.getRuleClass(), rightChild.getRuleClass(), production,
 					left.getStartOfSpan() == 0)) {
 
-				final SyntaxTreeNodeBinary newNode;
-				if (usingDependencies) {
-					// Update all the information for tracking dependencies.
-					final List<UnlabelledDependency> resolvedDependencies = new ArrayList<>();
-					final DependencyStructure newDependencies = production.getCombinator().apply(
-							leftChild.getDependencyStructure(), rightChild.getDependencyStructure(),
-							resolvedDependencies);
+				if (lazyAgenda) {
+					agenda.add(model.combineNodes(left, right, () -> makeBinaryNode(leftChild, rightChild, production)));
+				} else {
+					agenda.add(model.combineNodes(left, right, makeBinaryNode(leftChild, rightChild, production)));
+				}
+			}
+		}
+	}
+
+	SyntaxTreeNodeUnary makeUnaryNode(final SyntaxTreeNode parse, final UnaryRule unaryRule) {
+		if (usingDependencies) {
+			final List<UnlabelledDependency> resolvedDependencies = new ArrayList<>();
+			return new SyntaxTreeNodeUnary(unaryRule.getResult(), parse, unaryRule.getDependencyStructureTransformation()
+					.apply(parse.getDependencyStructure(), resolvedDependencies), unaryRule, resolvedDependencies);
+		} else {
+			return new SyntaxTreeNodeUnary(unaryRule.getResult(), parse, null, unaryRule, null);
+		}
+	}
 
-					final boolean headIsLeft = newDependencies.getArbitraryHead() == leftChild.getDependencyStructure()
-							.getArbitraryHead();
+	SyntaxTreeNodeBinary makeBinaryNode(final SyntaxTreeNode leftChild, final SyntaxTreeNode rightChild,
+			final RuleProduction production) {
+		if (usingDependencies) {
+			// Update all the information for tracking dependencies.
+			final List<UnlabelledDependency> resolvedDependencies = new ArrayList<>();
+			final DependencyStructure newDependencies = production.getCombinator().apply(
+					leftChild.getDependencyStructure(), rightChild.getDependencyStructure(), resolvedDependencies);
 
-					newNode = new SyntaxTreeNodeBinary(production.getCategory(), leftChild, rightChild,
-							production.getRuleType(), headIsLeft, newDependencies, resolvedDependencies);
+			final boolean headIsLeft = newDependencies.getArbitraryHead() == leftChild.getDependencyStructure()
+					.getArbitraryHead();
 
-				} else {
-					// If we're not modeling dependencies, we can save a lot of work.
-					newNode = new SyntaxTreeNodeBinary(production.getCategory(), leftChild, rightChild,
-							production.getRuleType(), production.isHeadIsLeft(), null, null);
-				}
+			return new SyntaxTreeNodeBinary(production.getCategory(), leftChild, rightChild, production.getRuleType(),
+					headIsLeft, newDependencies, resolvedDependencies);
 
-				agenda.add(model.combineNodes(left, right, newNode));
-			}
+		} else {
+			// If we're not modeling dependencies, we can save a lot of work.
+			return new SyntaxTreeNodeBinary(production.getCategory(), leftChild, rightChild, production.getRuleType(),
+					production.isHeadIsLeft(), null, null);
 		}
 	}
 }
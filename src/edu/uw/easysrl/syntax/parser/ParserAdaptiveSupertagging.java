@@ -0,0 +1,140 @@
+package edu.uw.easysrl.syntax.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Multimap;
+
+import edu.uw.easysrl.main.InputReader.InputToParser;
+import edu.uw.easysrl.syntax.grammar.Category;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode;
+import edu.uw.easysrl.syntax.parser.AbstractParser.UnaryRule;
+import edu.uw.easysrl.syntax.tagger.Tagger;
+import edu.uw.easysrl.syntax.tagger.Tagger.ScoredCategory;
+import edu.uw.easysrl.util.Util.Scored;
+
+/**
+ * Adaptive supertagging (Clark and Curran, 2007). Parses with a tight supertagger beam first, and if that fails (no
+ * parse, or the chart fills up), tries again with progressively wider beams. Most sentences parse with the first few
+ * supertags, so this is much faster than always using a wide beam.
+ *
+ * The sentence is only supertagged once, with the tagger's own beam, which should be at least as wide as the widest
+ * level. Each level prunes that distribution.
+ *
+ * The wrapped parser must use the input supertags when the input is already tagged, as the SupertagFactoredModel does.
+ */
+public class ParserAdaptiveSupertagging implements Parser {
+	private final Parser parser;
+	private final Tagger tagger;
+	private final double[] logBetas;
+	/**
+	 * Number of sentences parsed at each level. The last entry counts sentences that didn't parse at any level.
+	 */
+	private final AtomicIntegerArray parsesAtLevel;
+
+	/**
+	 * @param betas
+	 *            Beam for each level, from the tightest to the widest. A supertag is used if its probability is at
+	 *            least beta times the probability of the best supertag for the word.
+	 */
+	public ParserAdaptiveSupertagging(final Parser parser, final Tagger tagger, final List<Double> betas) {
+		Preconditions.checkArgument(!betas.isEmpty(), "No supertagger beams given");
+		this.parser = parser;
+		this.tagger = tagger;
+		this.logBetas = new double[betas.size()];
+		for (int i = 0; i < betas.size(); i++) {
+			Preconditions.checkArgument(i == 0 || betas.get(i) <= betas.get(i - 1),
+					"Supertagger beams must go from tightest to widest: " + betas);
+			logBetas[i] = Math.log(betas.get(i));
+		}
+		this.parsesAtLevel = new AtomicIntegerArray(betas.size() + 1);
+	}
+
+	@Override
+	public List<Scored<SyntaxTreeNode>> parseTokens(final List<String> words) {
+		return doParsing(InputToParser.fromTokens(words));
+	}
+
+	@Override
+	public List<Scored<SyntaxTreeNode>> doParsing(final InputToParser input) {
+		return doParsing(input, Deadline.NONE);
+	}
+
+	@Override
+	public List<Scored<SyntaxTreeNode>> doParsing(final InputToParser input, final Deadline deadline) {
+		if (input.length() > parser.getMaxSentenceLength()) {
+			return parser.doParsing(input, deadline);
+		}
+
+		final List<List<ScoredCategory>> supertags = input.isAlreadyTagged() ? input.getInputSupertags() : tagger
+				.tag(input);
+
+		int previousTags = 0;
+		for (int level = 0; level < logBetas.length; level++) {
+			final List<List<ScoredCategory>> pruned = prune(supertags, logBetas[level]);
+			final int tags = pruned.stream().mapToInt(List::size).sum();
+			if (tags == previousTags) {
+				// Same supertags as the last level, which failed.
+				continue;
+			}
+			previousTags = tags;
+
+			final List<Scored<SyntaxTreeNode>> result = parser.doParsing(
+					new InputToParser(input.getInputWords(), input.getGoldCategories(), pruned, true), deadline);
+			if (result != null) {
+				parsesAtLevel.incrementAndGet(level);
+				return result;
+			}
+		}
+
+		parsesAtLevel.incrementAndGet(logBetas.length);
+		return null;
+	}
+
+	/**
+	 * Removes supertags whose probability is less than beta times the probability of the best supertag for the word.
+	 */
+	private static List<List<ScoredCategory>> prune(final List<List<ScoredCategory>> supertags, final double logBeta) {
+		final List<List<ScoredCategory>> result = new ArrayList<>(supertags.size());
+		for (final List<ScoredCategory> tagsForWord : supertags) {
+			double bestScore = Double.NEGATIVE_INFINITY;
+			for (final ScoredCategory tag : tagsForWord) {
+				bestScore = Math.max(bestScore, tag.getScore());
+			}
+
+			final List<ScoredCategory> pruned = new ArrayList<>(tagsForWord.size());
+			for (final ScoredCategory tag : tagsForWord) {
+				if (tag.getScore() >= bestScore + logBeta) {
+					pruned.add(tag);
+				}
+			}
+			result.add(pruned);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Number of sentences that parsed at each level of the beam. The extra last entry is the number of sentences that
+	 * didn't parse at any level.
+	 */
+	public int[] getParsesAtLevel() {
+		final int[] result = new int[parsesAtLevel.length()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = parsesAtLevel.get(i);
+		}
+		return result;
+	}
+
+	@Override
+	public int getMaxSentenceLength() {
+		return parser.getMaxSentenceLength();
+	}
+
+	@Override
+	public Multimap<Category, UnaryRule> getUnaryRules() {
+		return parser.getUnaryRules();
+	}
+}
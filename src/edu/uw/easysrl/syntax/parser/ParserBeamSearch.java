@@ -2,43 +2,55 @@ package edu.uw.easysrl.syntax.parser;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
-import com.google.common.collect.Ordering;
+import com.google.common.collect.Lists;
 
 import edu.uw.easysrl.syntax.grammar.Category;
-import edu.uw.easysrl.syntax.model.AgendaItem;
-import edu.uw.easysrl.syntax.model.Model;
 import edu.uw.easysrl.syntax.model.Model.ModelFactory;
+import edu.uw.easysrl.syntax.parser.ChartCell.CellBeam;
 import edu.uw.easysrl.syntax.parser.ChartCell.CellNoDynamicProgram;
 
 public class ParserBeamSearch extends ParserCKY {
 
+	private final double logThreshold;
+
 	public ParserBeamSearch(final ModelFactory modelFactory, final int maxSentenceLength, final int nbest,
 			final List<Category> validRootCategories, final File modelFolder, final int maxChartSize)
 			throws IOException {
-		super(modelFactory, maxSentenceLength, nbest, validRootCategories, modelFolder, maxChartSize);
+		this(modelFactory, maxSentenceLength, nbest, validRootCategories, modelFolder, maxChartSize, null);
 	}
 
-	private final Comparator<AgendaItem> orderByInsideScore = new Comparator<AgendaItem>() {
+	/**
+	 * @param pool
+	 *            If not null, cells are filled in parallel on this pool, as in {@link ParserCKY}.
+	 */
+	public ParserBeamSearch(final ModelFactory modelFactory, final int maxSentenceLength, final int nbest,
+			final List<Category> validRootCategories, final File modelFolder, final int maxChartSize,
+			final ForkJoinPool pool) throws IOException {
+		this(modelFactory, maxSentenceLength, nbest, validRootCategories, modelFolder, maxChartSize, pool, 0.0);
+	}
 
-		@Override
-		public int compare(final AgendaItem o1, final AgendaItem o2) {
-			return Double.compare(o1.getInsideScore(), o2.getInsideScore());
-		}
-	};
+	/**
+	 * @param threshold
+	 *            If more than 0, entries are also pruned if their probability is less than threshold times the
+	 *            probability of the best entry for the same span.
+	 */
+	public ParserBeamSearch(final ModelFactory modelFactory, final int maxSentenceLength, final int nbest,
+			final List<Category> validRootCategories, final File modelFolder, final int maxChartSize,
+			final ForkJoinPool pool, final double threshold) throws IOException {
+		super(modelFactory, maxSentenceLength, nbest, validRootCategories, modelFolder, maxChartSize, pool);
+		this.logThreshold = Math.log(threshold);
+	}
 
 	@Override
-	ChartCell makeChartCell(final ChartCell[][] chart, final int startOfSpan, final int spanLength, final Model model) {
-
-		final ChartCell cell = super.makeChartCell(chart, startOfSpan, spanLength, model);
-		final List<AgendaItem> best = Ordering.from(orderByInsideScore).greatestOf(cell.getEntries(), nbest);
-		return new CellNoDynamicProgram(best);
+	ChartCell finishCell(final ChartCell cell) {
+		return new CellNoDynamicProgram(Lists.newArrayList(cell.getEntries()));
 	}
 
 	@Override
 	ChartCell createCell() {
-		return new CellNoDynamicProgram();
+		return new CellBeam(nbest, logThreshold);
 	}
 }
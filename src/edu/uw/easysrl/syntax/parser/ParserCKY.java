@@ -6,16 +6,17 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 import java.util.stream.Collectors;
 
 import edu.uw.easysrl.dependencies.DependencyStructure;
 import edu.uw.easysrl.dependencies.UnlabelledDependency;
 import edu.uw.easysrl.main.InputReader.InputToParser;
 import edu.uw.easysrl.syntax.grammar.Category;
-import edu.uw.easysrl.syntax.grammar.Combinator;
 import edu.uw.easysrl.syntax.grammar.Combinator.RuleClass;
 import edu.uw.easysrl.syntax.grammar.Combinator.RuleProduction;
-import edu.uw.easysrl.syntax.grammar.Combinator.RuleType;
 import edu.uw.easysrl.syntax.grammar.NormalForm;
 import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode;
 import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode.SyntaxTreeNodeBinary;
@@ -28,19 +29,43 @@ import edu.uw.easysrl.util.Util.Scored;
 
 public class ParserCKY extends AbstractParser {
 
+	/**
+	 * Spans with fewer cells than this are filled on one thread, because forking costs more than it saves.
+	 */
+	private final static int MIN_PARALLEL_CELLS = 2;
+
+	/**
+	 * Smallest number of split points a task for part of a cell works on.
+	 */
+	private final static int MIN_SPLITS_PER_TASK = 4;
+
 	public ParserCKY(final ModelFactory modelFactory, final int maxSentenceLength, final int nbest,
 			final List<Category> validRootCategories, final File modelFolder, final int maxChartSize)
 					throws IOException {
+		this(modelFactory, maxSentenceLength, nbest, validRootCategories, modelFolder, maxChartSize, null);
+	}
+
+	/**
+	 * @param pool
+	 *            If not null, cells of the same span length are filled in parallel on this pool. Cells only depend on
+	 *            shorter spans, so they're independent. When there are fewer cells than threads, near the top of the
+	 *            chart, each cell is also split up by split point. Only used if the model is thread-safe.
+	 */
+	public ParserCKY(final ModelFactory modelFactory, final int maxSentenceLength, final int nbest,
+			final List<Category> validRootCategories, final File modelFolder, final int maxChartSize,
+			final ForkJoinPool pool) throws IOException {
 		super(modelFactory.getLexicalCategories(), maxSentenceLength, nbest, validRootCategories, modelFolder);
 		this.maxChartSize = maxChartSize;
 		this.modelFactory = modelFactory;
+		this.pool = pool;
 	}
 
 	private final int maxChartSize;
 	private final ModelFactory modelFactory;
+	private final ForkJoinPool pool;
 
 	@Override
-	List<Scored<SyntaxTreeNode>> parseAstar(final InputToParser input) {
+	List<Scored<SyntaxTreeNode>> parseAstar(final InputToParser input, final Deadline deadline) {
 
 		final int numWords = input.length();
 		if (input.length() > maxLength) {
@@ -63,8 +88,31 @@ public class ParserCKY extends AbstractParser {
 			addEntry(cell, item, model);
 		}
 
+		final boolean parallel = pool != null && model.isThreadSafe();
 		int size = 0;
 		for (int spanLength = 2; spanLength <= numWords; spanLength++) {
+			final int numberOfCells = numWords - spanLength + 1;
+			if (parallel && numberOfCells >= MIN_PARALLEL_CELLS) {
+				final boolean splitCells = numberOfCells < pool.getParallelism()
+						&& spanLength - 1 >= 2 * MIN_SPLITS_PER_TASK;
+				pool.invoke(new FillCells(chart, spanLength, 0, numberOfCells, splitCells, model, deadline));
+
+				if (deadline.isExpired()) {
+					// Some cells may not have been filled.
+					throw new Deadline.ExpiredException("Timed out parsing sentence of length " + numWords);
+				}
+
+				for (int startOfSpan = 0; startOfSpan < numberOfCells; startOfSpan++) {
+					size += chart[startOfSpan][spanLength - 1].size();
+				}
+
+				if (size > maxChartSize) {
+					return null;
+				}
+
+				continue;
+			}
+
 			for (int startOfSpan = 0; startOfSpan <= numWords - spanLength; startOfSpan++) {
 				final ChartCell newCell = makeChartCell(chart, startOfSpan, spanLength, model);
 
@@ -75,6 +123,10 @@ public class ParserCKY extends AbstractParser {
 
 					return null;
 				}
+
+				if (deadline.isExpired()) {
+					throw new Deadline.ExpiredException("Timed out parsing sentence of length " + numWords);
+				}
 			}
 		}
 
@@ -90,10 +142,19 @@ public class ParserCKY extends AbstractParser {
 		return result.size() == 0 ? null : result.subList(0, 1);
 	}
 
-	ChartCell makeChartCell(final ChartCell[][] chart, final int startOfSpan, final int spanLength, final Model model) {
+	private ChartCell makeChartCell(final ChartCell[][] chart, final int startOfSpan, final int spanLength,
+			final Model model) {
+		return finishCell(makePartialCell(chart, startOfSpan, spanLength, 1, spanLength, model));
+	}
+
+	/**
+	 * Builds the entries of a cell that use split points from firstSplit (inclusive) to lastSplit (exclusive).
+	 */
+	private ChartCell makePartialCell(final ChartCell[][] chart, final int startOfSpan, final int spanLength,
+			final int firstSplit, final int lastSplit, final Model model) {
 
 		final ChartCell newCell = createCell();
-		for (int spanSplit = 1; spanSplit < spanLength; spanSplit++) {
+		for (int spanSplit = firstSplit; spanSplit < lastSplit; spanSplit++) {
 			final ChartCell left = chart[startOfSpan][spanSplit - 1];
 			final ChartCell right = chart[startOfSpan + spanSplit][spanLength - spanSplit - 1];
 
@@ -106,42 +167,116 @@ public class ParserCKY extends AbstractParser {
 		return new Cell1BestCKY();
 	}
 
+	/**
+	 * Called when all the entries have been added to a cell, and returns the cell to put in the chart.
+	 */
+	ChartCell finishCell(final ChartCell cell) {
+		return cell;
+	}
+
+	/**
+	 * Fills the cells of one span length, from startOfSpan firstStart (inclusive) to lastStart (exclusive), by
+	 * splitting the range in half until each task has one cell.
+	 */
+	private class FillCells extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final ChartCell[][] chart;
+		private final int spanLength;
+		private final int firstStart;
+		private final int lastStart;
+		private final boolean splitCells;
+		private final Model model;
+		private final Deadline deadline;
+
+		private FillCells(final ChartCell[][] chart, final int spanLength, final int firstStart, final int lastStart,
+				final boolean splitCells, final Model model, final Deadline deadline) {
+			this.chart = chart;
+			this.spanLength = spanLength;
+			this.firstStart = firstStart;
+			this.lastStart = lastStart;
+			this.splitCells = splitCells;
+			this.model = model;
+			this.deadline = deadline;
+		}
+
+		@Override
+		protected void compute() {
+			if (lastStart - firstStart > 1) {
+				final int middle = (firstStart + lastStart) / 2;
+				invokeAll(new FillCells(chart, spanLength, firstStart, middle, splitCells, model, deadline),
+						new FillCells(chart, spanLength, middle, lastStart, splitCells, model, deadline));
+			} else if (!deadline.isExpired()) {
+				chart[firstStart][spanLength - 1] = splitCells ? finishCell(new FillCell(chart, firstStart,
+						spanLength, 1, spanLength, model).compute()) : makeChartCell(chart, firstStart, spanLength,
+						model);
+			}
+		}
+	}
+
+	/**
+	 * Builds the entries of a cell for a range of split points, by splitting the range in half and merging the
+	 * results.
+	 */
+	private class FillCell extends RecursiveTask<ChartCell> {
+		private static final long serialVersionUID = 1L;
+		private final ChartCell[][] chart;
+		private final int startOfSpan;
+		private final int spanLength;
+		private final int firstSplit;
+		private final int lastSplit;
+		private final Model model;
+
+		private FillCell(final ChartCell[][] chart, final int startOfSpan, final int spanLength,
+				final int firstSplit, final int lastSplit, final Model model) {
+			this.chart = chart;
+			this.startOfSpan = startOfSpan;
+			this.spanLength = spanLength;
+			this.firstSplit = firstSplit;
+			this.lastSplit = lastSplit;
+			this.model = model;
+		}
+
+		@Override
+		protected ChartCell compute() {
+			if (lastSplit - firstSplit < 2 * MIN_SPLITS_PER_TASK) {
+				return makePartialCell(chart, startOfSpan, spanLength, firstSplit, lastSplit, model);
+			}
+
+			final int middle = (firstSplit + lastSplit) / 2;
+			final FillCell right = new FillCell(chart, startOfSpan, spanLength, middle, lastSplit, model);
+			right.fork();
+			final ChartCell result = new FillCell(chart, startOfSpan, spanLength, firstSplit, middle, model)
+					.compute();
+
+			// Unary rules have already been applied to the entries, so they're added directly.
+			for (final AgendaItem entry : right.join().getEntries()) {
+				result.add(entry);
+			}
+			return result;
+		}
+	}
+
 	private void makeChartCell(final ChartCell result, final ChartCell left, final ChartCell right, final Model model) {
 
 		for (final AgendaItem l : left.getEntries()) {
+			final RuleClass leftRuleClass = l.getParse().getRuleType().getNormalFormClassForRule();
 			for (final AgendaItem r : right.getEntries()) {
 
-				if (!seenRules.isSeen(l.getParse().getCategory(), r.getParse().getCategory())) {
+				// Uses the same precomputed table as A*. Empty if the categories weren't seen combining.
+				final List<RuleProduction> rules = getRules(l.getParse().getCategory(), r.getParse().getCategory());
+				if (rules.isEmpty()) {
 					continue;
 				}
 
-				for (final RuleProduction rule : Combinator.getRules(l.getParse().getCategory(), r.getParse()
-						.getCategory(), binaryRules)) {
-
-					final RuleClass leftRuleClass = l.getParse().getRuleType().getNormalFormClassForRule();
-					final RuleType ruleType = rule.getRuleType();
-					final RuleClass rightRuleClass = r.getParse().getRuleType().getNormalFormClassForRule();
-
-					if (!NormalForm.isOk(leftRuleClass, rightRuleClass, ruleType, l.getParse().getCategory(), r
-							.getParse().getCategory(), rule.getCategory(), l.getStartOfSpan() == 0)) {
+				final RuleClass rightRuleClass = r.getParse().getRuleType().getNormalFormClassForRule();
+				for (final RuleProduction rule : rules) {
+					if (!NormalForm.isOk(leftRuleClass, rightRuleClass, rule, l.getStartOfSpan() == 0)) {
 						continue;
 					}
-					final SyntaxTreeNode newNode;
-
-					if (l.getParse().hasDependencies()) {
-						final List<UnlabelledDependency> resolvedDependencies = new ArrayList<>();
-						final DependencyStructure deps = rule.getCombinator().apply(
-								l.getParse().getDependencyStructure(), r.getParse().getDependencyStructure(),
-								resolvedDependencies);
-
-						newNode = new SyntaxTreeNodeBinary(rule.getCategory(), l.getParse(), r.getParse(), ruleType,
-								rule.isHeadIsLeft(), deps, resolvedDependencies);
-					} else {
-						newNode = new SyntaxTreeNodeBinary(rule.getCategory(), l.getParse(), r.getParse(), ruleType,
-								rule.isHeadIsLeft(), null, null);
-					}
-
-					final AgendaItem newItem = model.combineNodes(l, r, newNode);
+					// The node is built lazily. A CellBeam only builds it if the item is kept, but a Cell1BestCKY
+					// builds it for every item, to get the item's equivalence class key.
+					final AgendaItem newItem = model.combineNodes(l, r, () -> makeBinaryNode(l.getParse(), r
+							.getParse(), rule));
 
 					addEntry(result, newItem, model);
 				}
@@ -151,27 +286,38 @@ public class ParserCKY extends AbstractParser {
 	}
 
 	private void addEntry(final ChartCell result, final AgendaItem newItem, final Model model) {
+		if (result.add(newItem)) {
+			final SyntaxTreeNode parse = newItem.getParse();
+			for (final UnaryRule unary : unaryRuleTable.getRules(parse.getCategory())) {
+				addEntry(result, model.unary(newItem, () -> makeUnaryNode(parse, unary), unary), model);
+			}
+		}
+	}
 
-		final Category category = newItem.getParse().getCategory();
+	private SyntaxTreeNode makeBinaryNode(final SyntaxTreeNode left, final SyntaxTreeNode right,
+			final RuleProduction rule) {
+		if (left.hasDependencies()) {
+			final List<UnlabelledDependency> resolvedDependencies = new ArrayList<>();
+			final DependencyStructure deps = rule.getCombinator().apply(left.getDependencyStructure(),
+					right.getDependencyStructure(), resolvedDependencies);
+
+			return new SyntaxTreeNodeBinary(rule.getCategory(), left, right, rule.getRuleType(), rule.isHeadIsLeft(),
+					deps, resolvedDependencies);
+		} else {
+			return new SyntaxTreeNodeBinary(rule.getCategory(), left, right, rule.getRuleType(), rule.isHeadIsLeft(),
+					null, null);
+		}
+	}
 
-		if (result.add(newItem)) {
-			for (final UnaryRule unary : unaryRules.get(category)) {
-				final SyntaxTreeNode unaryNode;
-				if (newItem.getParse().hasDependencies()) {
-					final List<UnlabelledDependency> resolvedDependencies = new ArrayList<>();
-					final DependencyStructure newDeps = unary.getDependencyStructureTransformation().apply(
-							newItem.getParse().getDependencyStructure(), resolvedDependencies);
-
-					unaryNode = new SyntaxTreeNodeUnary(unary.getCategory(), newItem.getParse(), newDeps, unary,
-							resolvedDependencies);
-
-				} else {
-					unaryNode = new SyntaxTreeNodeUnary(unary.getCategory(), newItem.getParse(), null, unary, null);
-				}
-				final AgendaItem newUnary = model.unary(newItem, unaryNode, unary);
+	private SyntaxTreeNode makeUnaryNode(final SyntaxTreeNode child, final UnaryRule unary) {
+		if (child.hasDependencies()) {
+			final List<UnlabelledDependency> resolvedDependencies = new ArrayList<>();
+			final DependencyStructure newDeps = unary.getDependencyStructureTransformation().apply(
+					child.getDependencyStructure(), resolvedDependencies);
 
-				addEntry(result, newUnary, model);
-			}
+			return new SyntaxTreeNodeUnary(unary.getCategory(), child, newDeps, unary, resolvedDependencies);
+		} else {
+			return new SyntaxTreeNodeUnary(unary.getCategory(), child, null, unary, null);
 		}
 	}
 
@@ -32,14 +32,33 @@ public abstract class SRLParser {
 	}
 
 	public final List<CCGandSRLparse> parseTokens(final InputToParser tokens) {
-		return parseTokens2(tagger.tag(tokens));
+		return parseTokens(tokens, Deadline.NONE);
 	}
 
-	protected abstract List<CCGandSRLparse> parseTokens2(InputToParser tokens);
+	/**
+	 * Parses the tokens, giving up when the deadline expires. Throws a Deadline.ExpiredException if it runs out of
+	 * time without finding a parse.
+	 */
+	public final List<CCGandSRLparse> parseTokens(final InputToParser tokens, final Deadline deadline) {
+		return parseTokens2(tagger.tag(tokens), deadline);
+	}
+
+	protected abstract List<CCGandSRLparse> parseTokens2(InputToParser tokens, Deadline deadline);
 
+	/**
+	 * Tries each parser in turn, until one finds a parse. If a parser runs out of time, the next one gets the rest of
+	 * the time. When there's a time limit, each parser but the last only gets a share of the remaining time, so that
+	 * the later (usually faster) parsers still have time to run.
+	 */
 	public static class BackoffSRLParser extends SRLParser {
+		/**
+		 * Fraction of the remaining time given to each parser but the last.
+		 */
+		private final static double BACKOFF_TIME_SHARE = 0.5;
+
 		private final SRLParser[] parsers;
 		private final AtomicInteger backoffs = new AtomicInteger();
+		private final AtomicInteger timeouts = new AtomicInteger();
 
 		public BackoffSRLParser(final SRLParser... parsers) {
 			super(parsers[0].tagger);
@@ -47,9 +66,22 @@ public abstract class SRLParser {
 		}
 
 		@Override
-		protected List<CCGandSRLparse> parseTokens2(final InputToParser tokens) {
-			for (final SRLParser parser : parsers) {
-				final List<CCGandSRLparse> parses = parser.parseTokens(tokens);
+		protected List<CCGandSRLparse> parseTokens2(final InputToParser tokens, final Deadline deadline) {
+			for (int i = 0; i < parsers.length; i++) {
+				final boolean isLast = i == parsers.length - 1;
+				final List<CCGandSRLparse> parses;
+				try {
+					parses = parse(parsers[i], tokens, isLast ? deadline : deadline.fraction(BACKOFF_TIME_SHARE));
+				} catch (final Deadline.ExpiredException e) {
+					if (isLast || deadline.isExpired()) {
+						throw e;
+					}
+
+					timeouts.getAndIncrement();
+					backoffs.getAndIncrement();
+					continue;
+				}
+
 				if (parses != null) {
 					return parses;
 				} else {
@@ -60,6 +92,22 @@ public abstract class SRLParser {
 			return null;
 		}
 
+		/**
+		 * The tokens are already POS-tagged, so parsers using the same POS tagger skip tagging them again. They also
+		 * share any supertagger scores stored on the tokens by earlier parsers.
+		 */
+		private List<CCGandSRLparse> parse(final SRLParser parser, final InputToParser tokens, final Deadline deadline) {
+			return parser.tagger == super.tagger ? parser.parseTokens2(tokens, deadline) : parser.parseTokens(
+					tokens, deadline);
+		}
+
+		/**
+		 * Number of sentences where a parser ran out of time, and the next parser was tried.
+		 */
+		public int getTimeouts() {
+			return timeouts.get();
+		}
+
 		@Override
 		public int getMaxSentenceLength() {
 			return parsers[parsers.length - 1].getMaxSentenceLength();
@@ -80,9 +128,10 @@ public abstract class SRLParser {
 		}
 
 		@Override
-		protected List<CCGandSRLparse> parseTokens2(final InputToParser tokens) {
+		protected List<CCGandSRLparse> parseTokens2(final InputToParser tokens, final Deadline deadline) {
 
-			List<CCGandSRLparse> parse = parser.parseTokens(tokens);
+			// Already POS-tagged, with the parser's own tagger.
+			List<CCGandSRLparse> parse = parser.parseTokens2(tokens, deadline);
 
 			if (parse != null) {
 				parse = parse.stream().map(x -> x.addSemantics(lexicon)).collect(Collectors.toList());
@@ -106,8 +155,8 @@ public abstract class SRLParser {
 		}
 
 		@Override
-		protected List<CCGandSRLparse> parseTokens2(final InputToParser tokens) {
-			final List<Scored<SyntaxTreeNode>> parses = parser.doParsing(tokens);
+		protected List<CCGandSRLparse> parseTokens2(final InputToParser tokens, final Deadline deadline) {
+			final List<Scored<SyntaxTreeNode>> parses = parser.doParsing(tokens, deadline);
 			if (parses == null) {
 				return null;
 			} else {
@@ -122,6 +171,10 @@ public abstract class SRLParser {
 		public int getMaxSentenceLength() {
 			return parser.getMaxSentenceLength();
 		}
+
+		public Parser getParser() {
+			return parser;
+		}
 	}
 
 	public static class CCGandSRLparse implements Serializable {
@@ -186,9 +239,9 @@ public abstract class SRLParser {
 		private final LabelClassifier classifier;
 
 		@Override
-		public List<CCGandSRLparse> parseTokens2(final InputToParser tokens) {
+		public List<CCGandSRLparse> parseTokens2(final InputToParser tokens, final Deadline deadline) {
 
-			final List<CCGandSRLparse> parses = super.parseTokens2(tokens);
+			final List<CCGandSRLparse> parses = super.parseTokens2(tokens, deadline);
 			if (parses == null) {
 				return null;
 			}
@@ -212,6 +265,10 @@ public abstract class SRLParser {
 	}
 
 	public List<CCGandSRLparse> parseTokens(final List<InputWord> words) {
-		return parseTokens(new InputToParser(words, null, null, false));
+		return parseTokens(words, Deadline.NONE);
+	}
+
+	public List<CCGandSRLparse> parseTokens(final List<InputWord> words, final Deadline deadline) {
+		return parseTokens(new InputToParser(words, null, null, false), deadline);
 	}
 }
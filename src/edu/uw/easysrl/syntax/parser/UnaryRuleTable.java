@@ -0,0 +1,65 @@
+package edu.uw.easysrl.syntax.parser;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Multimap;
+
+import edu.uw.easysrl.syntax.grammar.Category;
+import edu.uw.easysrl.syntax.grammar.Combinator.RuleType;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode;
+import edu.uw.easysrl.syntax.parser.AbstractParser.UnaryRule;
+
+/**
+ * The unary rules for each category, in lists indexed by category ID, so that looking up the rules for a new chart
+ * entry doesn't need a map lookup. The table isn't modified after construction, so it can be shared between parser
+ * threads.
+ *
+ * Unary rules apply to the output of punctuation rules only if they're type-raising, so those rules are also stored
+ * separately.
+ */
+class UnaryRuleTable {
+	private final List<List<UnaryRule>> rules;
+	private final List<List<UnaryRule>> typeRaisingRules;
+
+	UnaryRuleTable(final Multimap<Category, UnaryRule> unaryRules) {
+		int size = 0;
+		for (final Category category : unaryRules.keySet()) {
+			size = Math.max(size, category.getID() + 1);
+		}
+
+		// Categories without any unary rules get an empty list.
+		this.rules = new ArrayList<>(Collections.nCopies(size, Collections.emptyList()));
+		this.typeRaisingRules = new ArrayList<>(Collections.nCopies(size, Collections.emptyList()));
+		for (final Category category : unaryRules.keySet()) {
+			final Collection<UnaryRule> rulesForCategory = unaryRules.get(category);
+			rules.set(category.getID(), ImmutableList.copyOf(rulesForCategory));
+			typeRaisingRules.set(category.getID(), ImmutableList.copyOf(rulesForCategory.stream()
+					.filter(UnaryRule::isTypeRaising).iterator()));
+		}
+	}
+
+	/**
+	 * All the unary rules that apply to a category.
+	 */
+	List<UnaryRule> getRules(final Category category) {
+		return get(rules, category);
+	}
+
+	/**
+	 * The unary rules that can apply to a node. Only type-raising rules can apply to the output of punctuation rules.
+	 */
+	List<UnaryRule> getRules(final SyntaxTreeNode node) {
+		final boolean isPunctuationNode = node.getRuleType() == RuleType.LP || node.getRuleType() == RuleType.RP;
+		return get(isPunctuationNode ? typeRaisingRules : rules, node.getCategory());
+	}
+
+	private static List<UnaryRule> get(final List<List<UnaryRule>> table, final Category category) {
+		final int id = category.getID();
+		// Categories created after the table have no unary rules.
+		return id < table.size() ? table.get(id) : Collections.emptyList();
+	}
+}
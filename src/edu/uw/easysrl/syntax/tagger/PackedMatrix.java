@@ -0,0 +1,436 @@
+package edu.uw.easysrl.syntax.tagger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+import edu.uw.easysrl.syntax.tagger.TaggerEmbeddings.Precision;
+import edu.uw.easysrl.util.BinaryModelFile;
+
+/**
+ * A dense row-major matrix of model parameters, stored in one contiguous buffer at a given precision. The buffer is
+ * either on the heap, or a view of a memory-mapped model file.
+ */
+abstract class PackedMatrix {
+
+	/**
+	 * Number of rows multiplied with every vector in multiply() before moving on to the next rows, so that they stay in
+	 * cache.
+	 */
+	private final static int ROW_BLOCK_SIZE = 64;
+
+	final int rows;
+	final int columns;
+
+	private PackedMatrix(final int rows, final int columns) {
+		this.rows = rows;
+		this.columns = columns;
+	}
+
+	/**
+	 * Stores the values of a row-major (rows x columns) matrix at the given precision.
+	 */
+	static PackedMatrix make(final Precision precision, final double[] values, final int rows, final int columns) {
+		if (values.length != rows * columns) {
+			throw new IllegalArgumentException("Expected " + rows * columns + " values but got " + values.length);
+		}
+
+		switch (precision) {
+		case DOUBLE:
+			return new DoubleMatrix(DoubleBuffer.wrap(values), rows, columns);
+		case FLOAT:
+			return new FloatMatrix(FloatBuffer.wrap(toFloats(values)), rows, columns);
+		case INT8:
+			return Int8Matrix.quantize(values, rows, columns);
+		default:
+			throw new IllegalArgumentException("Unknown precision: " + precision);
+		}
+	}
+
+	/**
+	 * Reads a matrix written by write(), without copying it out of the file.
+	 */
+	static PackedMatrix read(final BinaryModelFile.Reader reader) throws IOException {
+		final Precision precision = Precision.values()[reader.readInt()];
+		final int rows = reader.readInt();
+		final int columns = reader.readInt();
+		switch (precision) {
+		case DOUBLE:
+			return new DoubleMatrix(reader.readDoubles(), rows, columns);
+		case FLOAT:
+			return new FloatMatrix(reader.readFloats(), rows, columns);
+		case INT8:
+			final FloatBuffer scales = reader.readFloats();
+			return new Int8Matrix(reader.readBytes(), scales, rows, columns);
+		default:
+			throw new IOException("Unknown precision: " + precision);
+		}
+	}
+
+	void write(final BinaryModelFile.Writer writer) throws IOException {
+		writer.writeInt(getPrecision().ordinal());
+		writer.writeInt(rows);
+		writer.writeInt(columns);
+		writeValues(writer);
+	}
+
+	abstract Precision getPrecision();
+
+	abstract void writeValues(BinaryModelFile.Writer writer) throws IOException;
+
+	/**
+	 * Dot product of the specified row with vector[offset ... offset + columns - 1].
+	 */
+	abstract double dot(int row, double[] vector, int offset);
+
+	/**
+	 * Multiplies every row with each of the vectors, which are stored one after another. The result is a row-major
+	 * (numberOfVectors x rows) matrix.
+	 */
+	abstract double[] multiply(double[] vectors, int numberOfVectors);
+
+	/**
+	 * Writes the specified row into target, starting at offset.
+	 */
+	abstract void copyRow(int row, double[] target, int offset);
+
+	/**
+	 * Approximate memory used by the parameters.
+	 */
+	abstract long sizeInBytes();
+
+	/**
+	 * The (possibly rounded) values of the matrix, in row-major order.
+	 */
+	double[] toArray() {
+		final double[] result = new double[rows * columns];
+		for (int row = 0; row < rows; row++) {
+			copyRow(row, result, row * columns);
+		}
+		return result;
+	}
+
+	private static float[] toFloats(final double[] values) {
+		final float[] result = new float[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = (float) values[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Double-precision dot product of a[aOffset ... aOffset + length - 1] and b[bOffset ... bOffset + length - 1].
+	 */
+	private static double doubleDot(final double[] a, final int aOffset, final double[] b, final int bOffset,
+			final int length) {
+		// Independent sums, so the additions can be pipelined.
+		double sum0 = 0.0;
+		double sum1 = 0.0;
+		double sum2 = 0.0;
+		double sum3 = 0.0;
+		int i = 0;
+		for (; i + 3 < length; i += 4) {
+			sum0 += a[aOffset + i] * b[bOffset + i];
+			sum1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+			sum2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+			sum3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+		}
+		for (; i < length; i++) {
+			sum0 += a[aOffset + i] * b[bOffset + i];
+		}
+
+		return (sum0 + sum1) + (sum2 + sum3);
+	}
+
+	/**
+	 * Single-precision dot product of a[aOffset ... aOffset + length - 1] and b[bOffset ... bOffset + length - 1].
+	 */
+	private static float floatDot(final float[] a, final int aOffset, final float[] b, final int bOffset,
+			final int length) {
+		float sum0 = 0f;
+		float sum1 = 0f;
+		float sum2 = 0f;
+		float sum3 = 0f;
+		int i = 0;
+		for (; i + 3 < length; i += 4) {
+			sum0 += a[aOffset + i] * b[bOffset + i];
+			sum1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+			sum2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+			sum3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+		}
+		for (; i < length; i++) {
+			sum0 += a[aOffset + i] * b[bOffset + i];
+		}
+
+		return (sum0 + sum1) + (sum2 + sum3);
+	}
+
+	/**
+	 * Computes multiply() one block of rows at a time. The rows of each block are unpacked into an array of type B,
+	 * which is then multiplied with all the vectors (converted to type V).
+	 */
+	private abstract static class BlockedMatrix<B, V> extends PackedMatrix {
+		private BlockedMatrix(final int rows, final int columns) {
+			super(rows, columns);
+		}
+
+		/**
+		 * Returns an array large enough for ROW_BLOCK_SIZE rows.
+		 */
+		abstract B makeBlock();
+
+		/**
+		 * Unpacks rows [start, end) into the block.
+		 */
+		abstract void unpack(int start, int end, B block);
+
+		abstract V convertVectors(double[] vectors);
+
+		/**
+		 * Dot product of the row at blockOffset in the block with the vector at vectorOffset.
+		 */
+		abstract double dot(B block, int blockOffset, V vectors, int vectorOffset);
+
+		@Override
+		double[] multiply(final double[] vectors, final int numberOfVectors) {
+			final double[] result = new double[numberOfVectors * rows];
+			final B block = makeBlock();
+			final V converted = convertVectors(vectors);
+			for (int blockStart = 0; blockStart < rows; blockStart += ROW_BLOCK_SIZE) {
+				final int blockEnd = Math.min(rows, blockStart + ROW_BLOCK_SIZE);
+				unpack(blockStart, blockEnd, block);
+				for (int vector = 0; vector < numberOfVectors; vector++) {
+					for (int row = blockStart; row < blockEnd; row++) {
+						result[vector * rows + row] = dot(block, (row - blockStart) * columns, converted, vector
+								* columns);
+					}
+				}
+			}
+
+			return result;
+		}
+	}
+
+	private static class DoubleMatrix extends BlockedMatrix<double[], double[]> {
+		private final DoubleBuffer values;
+
+		private DoubleMatrix(final DoubleBuffer values, final int rows, final int columns) {
+			super(rows, columns);
+			this.values = values;
+		}
+
+		@Override
+		Precision getPrecision() {
+			return Precision.DOUBLE;
+		}
+
+		@Override
+		void writeValues(final BinaryModelFile.Writer writer) throws IOException {
+			writer.writeDoubles(values);
+		}
+
+		@Override
+		double dot(final int row, final double[] vector, final int offset) {
+			final int start = row * columns;
+			double sum = 0.0;
+			for (int i = 0; i < columns; i++) {
+				sum += values.get(start + i) * vector[offset + i];
+			}
+
+			return sum;
+		}
+
+		@Override
+		double[] makeBlock() {
+			return new double[ROW_BLOCK_SIZE * columns];
+		}
+
+		@Override
+		void unpack(final int start, final int end, final double[] block) {
+			final DoubleBuffer source = values.duplicate();
+			source.position(start * columns);
+			source.get(block, 0, (end - start) * columns);
+		}
+
+		@Override
+		double[] convertVectors(final double[] vectors) {
+			return vectors;
+		}
+
+		@Override
+		double dot(final double[] block, final int blockOffset, final double[] vectors, final int vectorOffset) {
+			return doubleDot(block, blockOffset, vectors, vectorOffset, columns);
+		}
+
+		@Override
+		void copyRow(final int row, final double[] target, final int offset) {
+			final DoubleBuffer source = values.duplicate();
+			source.position(row * columns);
+			source.get(target, offset, columns);
+		}
+
+		@Override
+		long sizeInBytes() {
+			return 8L * values.limit();
+		}
+	}
+
+	/**
+	 * Multiplies in single precision, so the vectors are converted to floats once, rather than each weight being
+	 * converted to a double.
+	 */
+	private abstract static class FloatBlockedMatrix extends BlockedMatrix<float[], float[]> {
+		private FloatBlockedMatrix(final int rows, final int columns) {
+			super(rows, columns);
+		}
+
+		@Override
+		float[] makeBlock() {
+			return new float[ROW_BLOCK_SIZE * columns];
+		}
+
+		@Override
+		float[] convertVectors(final double[] vectors) {
+			return toFloats(vectors);
+		}
+
+		@Override
+		double dot(final float[] block, final int blockOffset, final float[] vectors, final int vectorOffset) {
+			return floatDot(block, blockOffset, vectors, vectorOffset, columns);
+		}
+	}
+
+	private static class FloatMatrix extends FloatBlockedMatrix {
+		private final FloatBuffer values;
+
+		private FloatMatrix(final FloatBuffer values, final int rows, final int columns) {
+			super(rows, columns);
+			this.values = values;
+		}
+
+		@Override
+		Precision getPrecision() {
+			return Precision.FLOAT;
+		}
+
+		@Override
+		void writeValues(final BinaryModelFile.Writer writer) throws IOException {
+			writer.writeFloats(values);
+		}
+
+		@Override
+		double dot(final int row, final double[] vector, final int offset) {
+			final int start = row * columns;
+			double sum = 0.0;
+			for (int i = 0; i < columns; i++) {
+				sum += values.get(start + i) * vector[offset + i];
+			}
+
+			return sum;
+		}
+
+		@Override
+		void unpack(final int start, final int end, final float[] block) {
+			final FloatBuffer source = values.duplicate();
+			source.position(start * columns);
+			source.get(block, 0, (end - start) * columns);
+		}
+
+		@Override
+		void copyRow(final int row, final double[] target, final int offset) {
+			final int start = row * columns;
+			for (int i = 0; i < columns; i++) {
+				target[offset + i] = values.get(start + i);
+			}
+		}
+
+		@Override
+		long sizeInBytes() {
+			return 4L * values.limit();
+		}
+	}
+
+	/**
+	 * Symmetric linear quantization, with one scale per row: value = scale[row] * quantized.
+	 */
+	private static class Int8Matrix extends FloatBlockedMatrix {
+		private final ByteBuffer values;
+		private final FloatBuffer scales;
+
+		private Int8Matrix(final ByteBuffer values, final FloatBuffer scales, final int rows, final int columns) {
+			super(rows, columns);
+			this.values = values;
+			this.scales = scales;
+		}
+
+		private static Int8Matrix quantize(final double[] values, final int rows, final int columns) {
+			final byte[] quantized = new byte[values.length];
+			final float[] scales = new float[rows];
+			for (int row = 0; row < rows; row++) {
+				final int start = row * columns;
+				double max = 0.0;
+				for (int i = start; i < start + columns; i++) {
+					max = Math.max(max, Math.abs(values[i]));
+				}
+
+				final float scale = (float) (max / Byte.MAX_VALUE);
+				scales[row] = scale;
+				if (scale > 0f) {
+					for (int i = start; i < start + columns; i++) {
+						quantized[i] = (byte) Math.round(values[i] / scale);
+					}
+				}
+			}
+
+			return new Int8Matrix(ByteBuffer.wrap(quantized), FloatBuffer.wrap(scales), rows, columns);
+		}
+
+		@Override
+		Precision getPrecision() {
+			return Precision.INT8;
+		}
+
+		@Override
+		void writeValues(final BinaryModelFile.Writer writer) throws IOException {
+			writer.writeFloats(scales);
+			writer.writeBytes(values);
+		}
+
+		@Override
+		double dot(final int row, final double[] vector, final int offset) {
+			final int start = row * columns;
+			double sum = 0.0;
+			for (int i = 0; i < columns; i++) {
+				sum += values.get(start + i) * vector[offset + i];
+			}
+
+			return scales.get(row) * sum;
+		}
+
+		@Override
+		void unpack(final int start, final int end, final float[] block) {
+			for (int row = start; row < end; row++) {
+				final int offset = (row - start) * columns;
+				final float scale = scales.get(row);
+				for (int i = 0; i < columns; i++) {
+					block[offset + i] = scale * values.get(row * columns + i);
+				}
+			}
+		}
+
+		@Override
+		void copyRow(final int row, final double[] target, final int offset) {
+			final int start = row * columns;
+			final float scale = scales.get(row);
+			for (int i = 0; i < columns; i++) {
+				target[offset + i] = scale * values.get(start + i);
+			}
+		}
+
+		@Override
+		long sizeInBytes() {
+			return values.limit() + 4L * scales.limit();
+		}
+	}
+}
@@ -22,6 +22,7 @@ import edu.uw.easysrl.corpora.CCGBankDependencies;
 import edu.uw.easysrl.corpora.CCGBankDependencies.DependencyParse;
 import edu.uw.easysrl.corpora.CCGBankDependencies.Partition;
 import edu.uw.easysrl.corpora.ParallelCorpusReader;
+import edu.uw.easysrl.main.InputReader.InputToParser;
 import edu.uw.easysrl.main.InputReader.InputWord;
 import edu.uw.easysrl.syntax.grammar.Category;
 import edu.uw.easysrl.syntax.model.CutoffsDictionaryInterface;
@@ -184,6 +185,14 @@ public abstract class Tagger {
 	 */
 	public abstract List<List<ScoredCategory>> tag(List<InputWord> words);
 
+	/**
+	 * Tags the input. Taggers that can share their work override this to reuse the scores stored on the input by
+	 * another tagger with the same model, so that parsers backing off to each other only run the supertagger once.
+	 */
+	public List<List<ScoredCategory>> tag(final InputToParser input) {
+		return tag(input.getInputWords());
+	}
+
 	public Stream<List<List<ScoredCategory>>> tagBatch(Stream<List<InputWord>> sentences) {
 		return sentences.map(this::tag);
 	}
@@ -192,9 +201,15 @@ public abstract class Tagger {
 			Collection<Category> categories);
 
 	public List<Map<Category, Double>> getCategoryScores(final List<InputWord> words, final double supertaggerWeight) {
+		return toCategoryScores(tag(words), supertaggerWeight);
+	}
 
-		final List<List<ScoredCategory>> tags = tag(words);
+	public List<Map<Category, Double>> getCategoryScores(final InputToParser input, final double supertaggerWeight) {
+		return toCategoryScores(tag(input), supertaggerWeight);
+	}
 
+	private static List<Map<Category, Double>> toCategoryScores(final List<List<ScoredCategory>> tags,
+			final double supertaggerWeight) {
 		final List<Map<Category, Double>> result = new ArrayList<>();
 		for (final List<ScoredCategory> scores : tags) {
 			result.add(scores.stream().collect(
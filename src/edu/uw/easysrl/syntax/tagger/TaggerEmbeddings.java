@@ -3,36 +3,68 @@ package edu.uw.easysrl.syntax.tagger;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.nio.DoubleBuffer;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import no.uib.cipr.matrix.DenseMatrix;
-import no.uib.cipr.matrix.DenseVector;
-import no.uib.cipr.matrix.Matrix;
-import no.uib.cipr.matrix.Vector;
-
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.ObjectIntHashMap;
+import com.carrotsearch.hppc.cursors.ObjectIntCursor;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
 import com.google.common.io.PatternFilenameFilter;
 
+import edu.uw.easysrl.main.EasySRL.InputFormat;
+import edu.uw.easysrl.main.InputReader;
+import edu.uw.easysrl.main.InputReader.InputToParser;
 import edu.uw.easysrl.main.InputReader.InputWord;
 import edu.uw.easysrl.syntax.grammar.Category;
 import edu.uw.easysrl.syntax.model.CutoffsDictionaryInterface;
+import edu.uw.easysrl.util.BinaryModelFile;
 import edu.uw.easysrl.util.Util;
 
 public class TaggerEmbeddings extends Tagger {
-	private final Matrix weightMatrix;
-	private final Vector bias;
 
-	private final Map<String, double[]> discreteFeatures;
-	private final Map<String, double[]> embeddingsFeatures;
+	/**
+	 * Storage used for the weights and embeddings of the model.
+	 */
+	public enum Precision {
+		/**
+		 * 8 bytes per parameter, exactly as in the model files.
+		 */
+		DOUBLE,
+		/**
+		 * 4 bytes per parameter.
+		 */
+		FLOAT,
+		/**
+		 * 1 byte per parameter, plus a scale per row of each matrix. Less accurate than FLOAT.
+		 */
+		INT8
+	}
+
+	public final static Precision DEFAULT_PRECISION = Precision.FLOAT;
+
+	/**
+	 * Weights of the classifier, as a (categories x totalFeatures) matrix.
+	 */
+	private final PackedMatrix weights;
+	private final double[] bias;
+
+	private final EmbeddingTable embeddingsFeatures;
+	private final EmbeddingTable suffixFeatures;
+	private final EmbeddingTable capitalizationFeatures;
 
 	private final int totalFeatures;
 
@@ -64,11 +96,45 @@ public class TaggerEmbeddings extends Tagger {
 	 */
 	private final Map<String, Integer> lexicalFeatures;
 
-	private final List<Vector> weightMatrixRows;
 	private final Map<Category, Integer> categoryToIndex;
 
+	/**
+	 * Identifies the model's parameters, so that taggers loaded from the same model can share scores.
+	 */
+	private final String modelID;
+
+	/**
+	 * Number of sentences scored together by tagBatch().
+	 */
+	private final static int SENTENCES_PER_BATCH = 32;
+
+	/**
+	 * File in the model folder containing the weights and embeddings in binary form, written by
+	 * saveCompiledModel(). It is memory-mapped, so it loads much faster than the text files.
+	 */
+	public final static String COMPILED_MODEL = "tagger.bin";
+	private final static String COMPILED_MODEL_FORMAT = "EasySRL TaggerEmbeddings";
+	private final static int COMPILED_MODEL_VERSION = 1;
+
+	/**
+	 * Loads the compiled model if the folder has one, and otherwise loads the text files at the default precision.
+	 */
 	public TaggerEmbeddings(final File modelFolder, final double beta, final int maxTagsPerWord,
 			final CutoffsDictionaryInterface cutoffs) throws IOException {
+		this(modelFolder, beta, maxTagsPerWord, cutoffs, DEFAULT_PRECISION, true);
+	}
+
+	/**
+	 * Loads the text files, storing the parameters at the specified precision.
+	 */
+	public TaggerEmbeddings(final File modelFolder, final double beta, final int maxTagsPerWord,
+			final CutoffsDictionaryInterface cutoffs, final Precision precision) throws IOException {
+		this(modelFolder, beta, maxTagsPerWord, cutoffs, precision, false);
+	}
+
+	private TaggerEmbeddings(final File modelFolder, final double beta, final int maxTagsPerWord,
+			final CutoffsDictionaryInterface cutoffs, final Precision precision, final boolean useCompiledModel)
+			throws IOException {
 		super(cutoffs, beta, loadCategories(new File(modelFolder, "categories")), maxTagsPerWord);
 		try {
 			final FilenameFilter embeddingsFileFilter = new PatternFilenameFilter("embeddings.*");
@@ -77,15 +143,25 @@ public class TaggerEmbeddings extends Tagger {
 			this.posFeatures = loadSparseFeatures(new File(modelFolder + "/postags"));
 			this.lexicalFeatures = loadSparseFeatures(new File(modelFolder + "/frequentwords"));
 
-			// Load word embeddings.
-			embeddingsFeatures = loadEmbeddings(true, modelFolder.listFiles(embeddingsFileFilter));
+			final File compiledModel = new File(modelFolder, COMPILED_MODEL);
+			final BinaryModelFile.Reader reader = useCompiledModel && compiledModel.exists() ? BinaryModelFile.Reader
+					.open(compiledModel, COMPILED_MODEL_FORMAT, COMPILED_MODEL_VERSION) : null;
+			modelID = modelFolder.getCanonicalPath() + " " + (reader != null ? COMPILED_MODEL : precision);
+
+			if (reader != null) {
+				embeddingsFeatures = EmbeddingTable.read(reader);
+				capitalizationFeatures = EmbeddingTable.read(reader);
+				suffixFeatures = EmbeddingTable.read(reader);
+			} else {
+				// Load word embeddings.
+				embeddingsFeatures = loadEmbeddings(true, precision, modelFolder.listFiles(embeddingsFileFilter));
 
-			// Load embeddings for capitalization and suffix features.
-			discreteFeatures = new HashMap<>();
-			discreteFeatures.putAll(loadEmbeddings(false, new File(modelFolder, "capitals")));
-			discreteFeatures.putAll(loadEmbeddings(false, new File(modelFolder, "suffix")));
-			totalFeatures = (embeddingsFeatures.get(unknownLower).length + discreteFeatures.get(unknownSuffix).length
-					+ discreteFeatures.get(capsLower).length + posFeatures.size() + lexicalFeatures.size())
+				// Load embeddings for capitalization and suffix features.
+				capitalizationFeatures = loadEmbeddings(false, precision, new File(modelFolder, "capitals"));
+				suffixFeatures = loadEmbeddings(false, precision, new File(modelFolder, "suffix"));
+			}
+			totalFeatures = (embeddingsFeatures.getDimension() + suffixFeatures.getDimension()
+					+ capitalizationFeatures.getDimension() + posFeatures.size() + lexicalFeatures.size())
 					* (2 * contextWindow + 1);
 
 			// Load the list of categories used by the model.
@@ -95,21 +171,23 @@ public class TaggerEmbeddings extends Tagger {
 			}
 
 			// Load the weight matrix used by the classifier.
-			weightMatrix = new DenseMatrix(lexicalCategories.size(), totalFeatures);
-			loadMatrix(weightMatrix, new File(modelFolder, "classifier"));
-
-			weightMatrixRows = new ArrayList<>(lexicalCategories.size());
-			for (int i = 0; i < lexicalCategories.size(); i++) {
-				final Vector row = new DenseVector(totalFeatures);
-				for (int j = 0; j < totalFeatures; j++) {
-					row.set(j, weightMatrix.get(i, j));
+			if (reader != null) {
+				weights = PackedMatrix.read(reader);
+				final DoubleBuffer biasBuffer = reader.readDoubles();
+				bias = new double[biasBuffer.limit()];
+				biasBuffer.get(bias);
+				if (weights.rows != lexicalCategories.size() || weights.columns != totalFeatures) {
+					throw new IOException("The shape of the classifier in " + compiledModel
+							+ " does not match the rest of the model. Recompile the model.");
 				}
-				weightMatrixRows.add(row);
-			}
-
-			bias = new DenseVector(lexicalCategories.size());
+			} else {
+				final double[] classifier = new double[lexicalCategories.size() * totalFeatures];
+				loadMatrix(classifier, totalFeatures, new File(modelFolder, "classifier"));
+				weights = PackedMatrix.make(precision, classifier, lexicalCategories.size(), totalFeatures);
 
-			loadVector(bias, new File(modelFolder, "bias"));
+				bias = new double[lexicalCategories.size()];
+				loadVector(bias, new File(modelFolder, "bias"));
+			}
 
 		} catch (final Exception e) {
 			throw new RuntimeException(e);
@@ -132,33 +210,124 @@ public class TaggerEmbeddings extends Tagger {
 	}
 
 	/**
-	 * Loads the neural network weight matrix.
+	 * Writes the weights and embeddings to the COMPILED_MODEL file in the model folder, so that later loads of the
+	 * model can memory-map them instead of parsing the text files.
 	 */
-	private void loadMatrix(final Matrix matrix, final File file) throws IOException {
+	public void saveCompiledModel(final File modelFolder) throws IOException {
+		try (BinaryModelFile.Writer writer = new BinaryModelFile.Writer(new File(modelFolder, COMPILED_MODEL),
+				COMPILED_MODEL_FORMAT, COMPILED_MODEL_VERSION)) {
+			embeddingsFeatures.write(writer);
+			capitalizationFeatures.write(writer);
+			suffixFeatures.write(writer);
+			weights.write(writer);
+			writer.writeDoubles(DoubleBuffer.wrap(bias));
+			writer.commit();
+		}
+	}
+
+	/**
+	 * Loads the neural network weight matrix, into a row-major array.
+	 */
+	private void loadMatrix(final double[] matrix, final int columns, final File file) throws IOException {
 		final Iterator<String> lines = Util.readFileLineByLine(file);
 		int row = 0;
 		while (lines.hasNext()) {
 			final String line = lines.next();
 			final String[] fields = line.split(" ");
+			if (fields.length != columns) {
+				throw new IOException("Expected " + columns + " weights on line " + (row + 1) + " of " + file
+						+ " but got " + fields.length);
+			}
 			for (int i = 0; i < fields.length; i++) {
-				matrix.set(row, i, Double.valueOf(fields[i]));
+				matrix[row * columns + i] = Double.valueOf(fields[i]);
 			}
 
 			row++;
 		}
 	}
 
-	private void loadVector(final Vector vector, final File file) throws IOException {
+	private void loadVector(final double[] vector, final File file) throws IOException {
 		final Iterator<String> lines = Util.readFileLineByLine(file);
 		int row = 0;
 		while (lines.hasNext()) {
 
 			final String data = lines.next();
-			vector.set(row, Double.valueOf(data));
+			vector[row] = Double.valueOf(data);
 			row++;
 		}
 	}
 
+	/**
+	 * Compares the supertags from the FLOAT and INT8 representations of a model with those from the DOUBLE
+	 * representation.
+	 *
+	 * Usage: TaggerEmbeddings modelFolder inputFile [inputFormat]
+	 */
+	public static void main(final String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: TaggerEmbeddings modelFolder inputFile [inputFormat]");
+			return;
+		}
+
+		final File modelFolder = Util.getFile(args[0]);
+		final InputFormat inputFormat = args.length > 2 ? InputFormat.valueOf(args[2].toUpperCase())
+				: InputFormat.TOKENIZED;
+		final List<List<InputWord>> sentences = new ArrayList<>();
+		InputReader.make(inputFormat).readInput(Util.getFile(args[1]))
+				.forEachRemaining(input -> sentences.add(input.getInputWords()));
+
+		final Map<Precision, List<List<List<ScoredCategory>>>> precisionToTags = new EnumMap<>(Precision.class);
+		for (final Precision precision : Precision.values()) {
+			final TaggerEmbeddings tagger = new TaggerEmbeddings(modelFolder, 0.0001, 50, null, precision);
+			System.out.println(precision + ": " + tagger.getParameterSizeInBytes() / 1024 + "KB of parameters");
+			precisionToTags.put(precision, tagger.tagBatch(sentences.stream()).collect(Collectors.toList()));
+		}
+
+		final List<List<List<ScoredCategory>>> gold = precisionToTags.get(Precision.DOUBLE);
+		for (final Precision precision : Precision.values()) {
+			if (precision == Precision.DOUBLE) {
+				continue;
+			}
+
+			final List<List<List<ScoredCategory>>> predicted = precisionToTags.get(precision);
+			int words = 0;
+			int sameBest = 0;
+			int sameTags = 0;
+			double maxDifference = 0.0;
+			for (int i = 0; i < gold.size(); i++) {
+				for (int j = 0; j < gold.get(i).size(); j++) {
+					final List<ScoredCategory> goldTags = gold.get(i).get(j);
+					final List<ScoredCategory> predictedTags = predicted.get(i).get(j);
+					words++;
+					if (goldTags.get(0).getCategory().equals(predictedTags.get(0).getCategory())) {
+						sameBest++;
+					}
+
+					final Map<Category, Double> goldScores = new HashMap<>();
+					for (final ScoredCategory tag : goldTags) {
+						goldScores.put(tag.getCategory(), tag.getScore());
+					}
+					boolean isSameList = goldTags.size() == predictedTags.size();
+					for (final ScoredCategory tag : predictedTags) {
+						final Double goldScore = goldScores.get(tag.getCategory());
+						if (goldScore == null) {
+							isSameList = false;
+						} else {
+							maxDifference = Math.max(maxDifference, Math.abs(goldScore - tag.getScore()));
+						}
+					}
+					if (isSameList) {
+						sameTags++;
+					}
+				}
+			}
+
+			System.out.println(String.format(
+					"%s: 1-best agreement=%.2f%%, same supertag lists=%.2f%%, max score difference=%.2e", precision,
+					100.0 * sameBest / words, 100.0 * sameTags / words, maxDifference));
+		}
+	}
+
 	public static List<Category> loadCategories(final File catFile) throws IOException {
 		return Files.lines(catFile.toPath()).map(Category::valueOf).collect(Collectors.toList());
 	}
@@ -170,19 +339,100 @@ public class TaggerEmbeddings extends Tagger {
 	 */
 	@Override
 	public List<List<ScoredCategory>> tag(final List<InputWord> words) {
-		final List<List<ScoredCategory>> result = new ArrayList<>(words.size());
+		return tagSentences(Collections.singletonList(words)).get(0);
+	}
+
+	/**
+	 * Reuses the scores stored on the input by a tagger with the same model, which may have a different beam or tag
+	 * dictionary. Otherwise, scores the sentence and stores the scores on the input.
+	 */
+	@Override
+	public List<List<ScoredCategory>> tag(final InputToParser input) {
+		final List<InputWord> words = input.getInputWords();
+		double[] scores = input.getSupertagScores(modelID);
+		if (scores == null) {
+			final double[] features = new double[words.size() * totalFeatures];
+			for (int wordIndex = 0; wordIndex < words.size(); wordIndex++) {
+				addFeaturesForWord(words, wordIndex, features, wordIndex * totalFeatures);
+			}
 
+			scores = score(features, words.size());
+			input.setSupertagScores(modelID, scores);
+		}
+
+		final List<List<ScoredCategory>> result = new ArrayList<>(words.size());
 		for (int wordIndex = 0; wordIndex < words.size(); wordIndex++) {
-			result.add(getTagsForWord(getVectorForWord(words, wordIndex), words.get(wordIndex)));
+			result.add(getTagsForWord(scores, wordIndex * lexicalCategories.size(), words.get(wordIndex)));
 		}
 
 		return result;
 	}
 
-	private Vector getVectorForWord(final List<InputWord> words, final int wordIndex) {
-		final double[] vector = new double[totalFeatures];
+	/**
+	 * Tags the sentences in batches, scoring all the words in a batch against all the categories with a single matrix
+	 * multiplication.
+	 */
+	@Override
+	public Stream<List<List<ScoredCategory>>> tagBatch(final Stream<List<InputWord>> sentences) {
+		final Iterator<List<List<InputWord>>> batches = Iterators.partition(sentences.iterator(), SENTENCES_PER_BATCH);
+		return StreamSupport.stream(((Iterable<List<List<InputWord>>>) () -> batches).spliterator(), false).flatMap(
+				batch -> tagSentences(batch).stream());
+	}
+
+	private List<List<List<ScoredCategory>>> tagSentences(final List<List<InputWord>> sentences) {
+		int totalWords = 0;
+		for (final List<InputWord> sentence : sentences) {
+			totalWords += sentence.size();
+		}
+
+		// One row of features per word in the batch.
+		final double[] features = new double[totalWords * totalFeatures];
+		int row = 0;
+		for (final List<InputWord> sentence : sentences) {
+			for (int wordIndex = 0; wordIndex < sentence.size(); wordIndex++) {
+				addFeaturesForWord(sentence, wordIndex, features, row * totalFeatures);
+				row++;
+			}
+		}
+
+		final double[] scores = score(features, totalWords);
 
-		int vectorIndex = 0;
+		final List<List<List<ScoredCategory>>> result = new ArrayList<>(sentences.size());
+		row = 0;
+		for (final List<InputWord> sentence : sentences) {
+			final List<List<ScoredCategory>> tagsForSentence = new ArrayList<>(sentence.size());
+			for (final InputWord word : sentence) {
+				tagsForSentence.add(getTagsForWord(scores, row * lexicalCategories.size(), word));
+				row++;
+			}
+			result.add(tagsForSentence);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Computes (features * weights^T + bias), where features is a row-major (rows x totalFeatures) matrix. The result
+	 * is a row-major (rows x categories) matrix of scores.
+	 */
+	private double[] score(final double[] features, final int rows) {
+		final int numberOfCategories = lexicalCategories.size();
+		final double[] result = weights.multiply(features, rows);
+		for (int row = 0; row < rows; row++) {
+			for (int cat = 0; cat < numberOfCategories; cat++) {
+				result[row * numberOfCategories + cat] += bias[cat];
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Writes the feature vector for the word at wordIndex into the features array, starting at offset.
+	 */
+	private void addFeaturesForWord(final List<InputWord> words, final int wordIndex, final double[] vector,
+			final int offset) {
+		int vectorIndex = offset;
 		for (int sentencePosition = wordIndex - contextWindow; sentencePosition <= wordIndex
 				+ contextWindow; sentencePosition++) {
 			vectorIndex = addToFeatureVector(vectorIndex, vector, sentencePosition, words);
@@ -208,10 +458,6 @@ public class TaggerEmbeddings extends Tagger {
 			}
 
 		}
-		// System.out.println(words.get(wordIndex).word+ " " +
-		// Doubles.asList(vector));
-
-		return new DenseVector(vector);
 	}
 
 	/**
@@ -220,33 +466,29 @@ public class TaggerEmbeddings extends Tagger {
 	 */
 	private int addToFeatureVector(int vectorIndex, final double[] vector, final int sentencePosition,
 			final List<InputWord> words) {
-		final double[] embedding = getEmbedding(words, sentencePosition);
-		vectorIndex = addToVector(vectorIndex, vector, embedding);
-		final double[] suffix = getSuffix(words, sentencePosition);
-		vectorIndex = addToVector(vectorIndex, vector, suffix);
-		final double[] caps = getCapitalization(words, sentencePosition);
-		vectorIndex = addToVector(vectorIndex, vector, caps);
+		vectorIndex = embeddingsFeatures.addToVector(getEmbedding(words, sentencePosition), vector, vectorIndex);
+		vectorIndex = suffixFeatures.addToVector(getSuffix(words, sentencePosition), vector, vectorIndex);
+		vectorIndex = capitalizationFeatures.addToVector(getCapitalization(words, sentencePosition), vector,
+				vectorIndex);
 
 		return vectorIndex;
 	}
 
-	private int addToVector(int index, final double[] vector, final double[] embedding) {
-		System.arraycopy(embedding, 0, vector, index, embedding.length);
-		index = index + embedding.length;
-		return index;
-	}
-
 	/**
 	 *
 	 * @param normalize
 	 *            If true, words are lower-cased with numbers replaced
+	 * @param precision
+	 *            Storage for the embeddings
 	 * @param embeddingsFiles
 	 * @return
 	 * @throws IOException
 	 */
-	private Map<String, double[]> loadEmbeddings(final boolean normalize, final File... embeddingsFiles)
-			throws IOException {
-		final Map<String, double[]> embeddingsMap = new HashMap<>();
+	private EmbeddingTable loadEmbeddings(final boolean normalize, final Precision precision,
+			final File... embeddingsFiles) throws IOException {
+		final ObjectIntHashMap<String> wordToRow = new ObjectIntHashMap<>();
+		final DoubleArrayList values = new DoubleArrayList();
+		int dimension = -1;
 		// Allow sharded input, by allowing the embeddings to be split across
 		// multiple files.
 		for (final File embeddingsFile : embeddingsFiles) {
@@ -259,18 +501,84 @@ public class TaggerEmbeddings extends Tagger {
 					word = normalize(word);
 				}
 
-				if (!embeddingsMap.containsKey(word)) {
+				if (!wordToRow.containsKey(word)) {
 					final String[] fields = line.split(" ");
-					final double[] embeddings = new double[fields.length - 1];
+					if (dimension == -1) {
+						dimension = fields.length - 1;
+					} else if (fields.length - 1 != dimension) {
+						throw new IOException("Expected " + dimension + " dimensions for " + word + " in "
+								+ embeddingsFile + " but got " + (fields.length - 1));
+					}
 					for (int i = 1; i < fields.length; i++) {
-						embeddings[i - 1] = Double.valueOf(fields[i]);
+						values.add(Double.valueOf(fields[i]));
 					}
-					embeddingsMap.put(word, embeddings);
+					wordToRow.put(word, wordToRow.size());
 				}
 			}
 		}
 
-		return embeddingsMap;
+		return new EmbeddingTable(wordToRow, PackedMatrix.make(precision, values.toArray(), wordToRow.size(),
+				Math.max(dimension, 0)));
+	}
+
+	/**
+	 * Embeddings for a vocabulary, packed into a single matrix with one row per word.
+	 */
+	private static class EmbeddingTable {
+		private final ObjectIntHashMap<String> wordToRow;
+		private final PackedMatrix vectors;
+
+		private EmbeddingTable(final ObjectIntHashMap<String> wordToRow, final PackedMatrix vectors) {
+			this.wordToRow = wordToRow;
+			this.vectors = vectors;
+		}
+
+		/**
+		 * Returns the row for the word, or -1 if it's not in the vocabulary.
+		 */
+		private int getRow(final String word) {
+			return wordToRow.getOrDefault(word, -1);
+		}
+
+		private int getDimension() {
+			return vectors.columns;
+		}
+
+		/**
+		 * Copies the embedding in the specified row into the vector, and returns the next empty index in the vector.
+		 */
+		private int addToVector(final int row, final double[] vector, final int index) {
+			vectors.copyRow(row, vector, index);
+			return index + vectors.columns;
+		}
+
+		private long sizeInBytes() {
+			// Roughly 50 bytes per vocabulary entry for the String and the hash table slots.
+			return vectors.sizeInBytes() + 50L * wordToRow.size();
+		}
+
+		private void write(final BinaryModelFile.Writer writer) throws IOException {
+			final String[] words = new String[wordToRow.size()];
+			for (final ObjectIntCursor<String> entry : wordToRow) {
+				words[entry.value] = entry.key;
+			}
+
+			writer.writeInt(words.length);
+			for (final String word : words) {
+				writer.writeString(word);
+			}
+			vectors.write(writer);
+		}
+
+		private static EmbeddingTable read(final BinaryModelFile.Reader reader) throws IOException {
+			final int size = reader.readInt();
+			final ObjectIntHashMap<String> wordToRow = new ObjectIntHashMap<>(size);
+			for (int row = 0; row < size; row++) {
+				wordToRow.put(reader.readString(), row);
+			}
+
+			return new EmbeddingTable(wordToRow, PackedMatrix.read(reader));
+		}
 	}
 
 	/**
@@ -287,28 +595,28 @@ public class TaggerEmbeddings extends Tagger {
 	 * Loads the embedding for the word at the specified index in the sentence. The index is allowed to be outside the
 	 * sentence range, in which case the appropriate 'padding' embedding is returned.
 	 */
-	private double[] getEmbedding(final List<InputWord> words, final int index) {
+	private int getEmbedding(final List<InputWord> words, final int index) {
 		if (index < 0) {
-			return embeddingsFeatures.get(leftPad);
+			return embeddingsFeatures.getRow(leftPad);
 		}
 		if (index >= words.size()) {
-			return embeddingsFeatures.get(rightPad);
+			return embeddingsFeatures.getRow(rightPad);
 		}
 		String word = words.get(index).word;
 
 		word = translateBrackets(word);
 
-		final double[] result = embeddingsFeatures.get(normalize(word));
-		if (result == null) {
+		final int result = embeddingsFeatures.getRow(normalize(word));
+		if (result == -1) {
 			final char firstCharacter = word.charAt(0);
 			final boolean isLower = 'a' <= firstCharacter && firstCharacter <= 'z';
 			final boolean isUpper = 'A' <= firstCharacter && firstCharacter <= 'Z';
 			if (isLower) {
-				return embeddingsFeatures.get(unknownLower);
+				return embeddingsFeatures.getRow(unknownLower);
 			} else if (isUpper) {
-				return embeddingsFeatures.get(unknownUpper);
+				return embeddingsFeatures.getRow(unknownUpper);
 			} else {
-				return embeddingsFeatures.get(unknownSpecial);
+				return embeddingsFeatures.getRow(unknownSpecial);
 			}
 		}
 
@@ -319,7 +627,7 @@ public class TaggerEmbeddings extends Tagger {
 	 * Loads the embedding for a word's 2-character suffix. The index is allowed to be outside the sentence range, in
 	 * which case the appropriate 'padding' embedding is returned.
 	 */
-	private double[] getSuffix(final List<InputWord> words, final int index) {
+	private int getSuffix(final List<InputWord> words, final int index) {
 		String suffix = null;
 		if (index < 0 || index >= words.size()) {
 			suffix = suffixPad;
@@ -336,9 +644,9 @@ public class TaggerEmbeddings extends Tagger {
 			}
 		}
 
-		double[] result = discreteFeatures.get(suffix.toLowerCase());
-		if (result == null) {
-			result = discreteFeatures.get(unknownSuffix);
+		int result = suffixFeatures.getRow(suffix.toLowerCase());
+		if (result == -1) {
+			result = suffixFeatures.getRow(unknownSuffix);
 		}
 		return result;
 	}
@@ -347,7 +655,7 @@ public class TaggerEmbeddings extends Tagger {
 	 * Loads the embedding for a word's capitalization. The index is allowed to be outside the sentence range, in which
 	 * case the appropriate 'padding' embedding is returned.
 	 */
-	private double[] getCapitalization(final List<InputWord> words, final int index) {
+	private int getCapitalization(final List<InputWord> words, final int index) {
 		String key;
 		if (index < 0 || index >= words.size()) {
 			key = capitalizedPad;
@@ -362,43 +670,40 @@ public class TaggerEmbeddings extends Tagger {
 			}
 		}
 
-		return discreteFeatures.get(key);
+		return capitalizationFeatures.getRow(key);
 	}
 
 	/**
 	 * weights(cat1) ... weights(cat2) ... ... bias(cat1) bias(cat2)
 	 */
 	public double[] getWeightVector() {
-		final double[] result = new double[(totalFeatures + 1) * lexicalCategories.size()];
-		int index = 0;
-		for (final Vector vector : weightMatrixRows) {
-			for (int i = 0; i < vector.size(); i++) {
-				result[index] = vector.get(i);
-				index++;
-			}
-		}
-
-		for (int i = 0; i < bias.size(); i++) {
-			result[index] = bias.get(i);
-			index++;
-		}
-
+		final double[] classifier = weights.toArray();
+		final double[] result = new double[classifier.length + bias.length];
+		System.arraycopy(classifier, 0, result, 0, classifier.length);
+		System.arraycopy(bias, 0, result, classifier.length, bias.length);
 		return result;
 	}
 
+	/**
+	 * Approximate heap used by the weights and embeddings.
+	 */
+	public long getParameterSizeInBytes() {
+		return weights.sizeInBytes() + 8L * bias.length + embeddingsFeatures.sizeInBytes()
+				+ suffixFeatures.sizeInBytes() + capitalizationFeatures.sizeInBytes();
+	}
+
 	/**
 	 * Returns a list of @SyntaxTreeNode for this word, sorted by their probability.
 	 *
-	 * @param vector
-	 *            A vector
+	 * @param scores
+	 *            Scores for all categories, for all words in a batch.
+	 * @param offset
+	 *            Index of the word's first score in the scores array.
 	 * @param word
 	 *            The word itself.
-	 * @param wordIndex
-	 *            The position of the word in the sentence.
-	 * @return
 	 * @return
 	 */
-	private List<ScoredCategory> getTagsForWord(final Vector vector, final InputWord word) {
+	private List<ScoredCategory> getTagsForWord(final double[] scores, final int offset, final InputWord word) {
 
 		// If we're using a tag dictionary, consider those tags --- otherwise,
 		// try all tags.
@@ -407,18 +712,19 @@ public class TaggerEmbeddings extends Tagger {
 			possibleCategories = tagDict.get(TagDict.OTHER_WORDS);
 		}
 
-		return getTagsForWord(vector, possibleCategories);
+		return getTagsForWord(scores, offset, possibleCategories);
 
 	}
 
-	private List<ScoredCategory> getTagsForWord(final Vector vector, final Collection<Integer> possibleCategories) {
+	private List<ScoredCategory> getTagsForWord(final double[] scores, final int offset,
+			final Collection<Integer> possibleCategories) {
 		final int size = Math.min(maxTagsPerWord, possibleCategories.size());
 
 		double bestScore = 0.0;
 
 		List<ScoredCategory> result = new ArrayList<>(possibleCategories.size());
 		for (final Integer cat : possibleCategories) {
-			final double score = weightMatrixRows.get(cat).dot(vector) + bias.get(cat);
+			final double score = scores[offset + cat];
 			result.add(new ScoredCategory(lexicalCategories.get(cat), score));
 			bestScore = Math.max(bestScore, score);
 		}
@@ -443,9 +749,18 @@ public class TaggerEmbeddings extends Tagger {
 	@Override
 	public Map<Category, Double> getCategoryScores(final List<InputWord> sentence, final int wordIndex,
 			final double weight, final Collection<Category> categories) {
+		final double[] features = new double[totalFeatures];
+		addFeaturesForWord(sentence, wordIndex, features, 0);
+
+		// Only score the requested categories.
+		final List<Integer> indices = categories.stream().map(x -> categoryToIndex.get(x))
+				.collect(Collectors.toList());
+		final double[] scores = new double[lexicalCategories.size()];
+		for (final int cat : indices) {
+			scores[cat] = weights.dot(cat, features, 0) + bias[cat];
+		}
 
-		final List<ScoredCategory> scoredCats = getTagsForWord(getVectorForWord(sentence, wordIndex),
-				categories.stream().map(x -> categoryToIndex.get(x)).collect(Collectors.toList()));
+		final List<ScoredCategory> scoredCats = getTagsForWord(scores, 0, indices);
 		return scoredCats.stream().collect(Collectors.toMap(ScoredCategory::getCategory, x -> x.getScore() * weight));
 	}
 
@@ -115,8 +115,7 @@ class CKY {
 					final RuleType rightRuleClass = r.getRuleType();
 
 					if (!NormalForm.isOk(leftRuleClass.getNormalFormClassForRule(),
-							rightRuleClass.getNormalFormClassForRule(), ruleType, l.getCategory(), r.getCategory(),
-							rule.getCategory(), startOfSpan == 0)) {
+							rightRuleClass.getNormalFormClassForRule(), rule, startOfSpan == 0)) {
 						continue;
 					}
 
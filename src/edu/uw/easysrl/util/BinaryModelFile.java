@@ -0,0 +1,271 @@
+package edu.uw.easysrl.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Versioned binary files for model parameters, which are memory-mapped when loaded. Everything is little-endian, and
+ * arrays are aligned to 8 bytes, so they can be used in place without being copied onto the heap. Several JVMs
+ * loading the same file share its pages.
+ *
+ * A file starts with the name of its format and a version number, which are checked when it's opened.
+ */
+public class BinaryModelFile {
+
+	private BinaryModelFile() {
+	}
+
+	/**
+	 * Writes a binary model file. Values must be read back in the same order. The file is written under a temporary
+	 * name, and renamed by commit(), so that processes which have mapped an older version of the file are unaffected.
+	 * If the writer is closed without being committed, e.g. because writing failed, the temporary file is deleted and
+	 * any existing file is left alone.
+	 */
+	public static class Writer implements Closeable {
+		private final File file;
+		private final File temporaryFile;
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+		private long position = 0;
+		private boolean committed = false;
+
+		public Writer(final File file, final String format, final int version) throws IOException {
+			this.file = file;
+			this.temporaryFile = new File(file.getPath() + ".tmp");
+			channel = FileChannel.open(temporaryFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			writeString(format);
+			writeInt(version);
+		}
+
+		private void ensureSpace(final int bytes) throws IOException {
+			if (buffer.remaining() < bytes) {
+				flush();
+			}
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+
+		public void writeByte(final byte value) throws IOException {
+			ensureSpace(1);
+			buffer.put(value);
+			position += 1;
+		}
+
+		public void writeInt(final int value) throws IOException {
+			ensureSpace(4);
+			buffer.putInt(value);
+			position += 4;
+		}
+
+		public void writeLong(final long value) throws IOException {
+			ensureSpace(8);
+			buffer.putLong(value);
+			position += 8;
+		}
+
+		public void writeFloat(final float value) throws IOException {
+			ensureSpace(4);
+			buffer.putFloat(value);
+			position += 4;
+		}
+
+		public void writeDouble(final double value) throws IOException {
+			ensureSpace(8);
+			buffer.putDouble(value);
+			position += 8;
+		}
+
+		public void writeString(final String value) throws IOException {
+			final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeInt(bytes.length);
+			for (final byte b : bytes) {
+				writeByte(b);
+			}
+		}
+
+		/**
+		 * Pads the file with zeros up to a multiple of 8 bytes.
+		 */
+		private void align() throws IOException {
+			while (position % 8 != 0) {
+				writeByte((byte) 0);
+			}
+		}
+
+		public void writeBytes(final ByteBuffer values) throws IOException {
+			writeInt(values.limit());
+			align();
+			for (int i = 0; i < values.limit(); i++) {
+				writeByte(values.get(i));
+			}
+		}
+
+		public void writeFloats(final FloatBuffer values) throws IOException {
+			writeInt(values.limit());
+			align();
+			for (int i = 0; i < values.limit(); i++) {
+				writeFloat(values.get(i));
+			}
+		}
+
+		public void writeDoubles(final DoubleBuffer values) throws IOException {
+			writeInt(values.limit());
+			align();
+			for (int i = 0; i < values.limit(); i++) {
+				writeDouble(values.get(i));
+			}
+		}
+
+		public void writeLongs(final LongBuffer values) throws IOException {
+			writeInt(values.limit());
+			align();
+			for (int i = 0; i < values.limit(); i++) {
+				writeLong(values.get(i));
+			}
+		}
+
+		/**
+		 * Finishes writing, and replaces the file with the new version. Call after the last value has been written.
+		 */
+		public void commit() throws IOException {
+			flush();
+			channel.force(false);
+			channel.close();
+			Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			committed = true;
+		}
+
+		/**
+		 * Deletes the temporary file, unless the writer has been committed.
+		 */
+		@Override
+		public void close() throws IOException {
+			if (!committed) {
+				try {
+					channel.close();
+				} finally {
+					Files.deleteIfExists(temporaryFile.toPath());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a memory-mapped binary model file. Arrays are returned as read-only views of the file.
+	 */
+	public static class Reader {
+		private final ByteBuffer buffer;
+
+		private Reader(final ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		/**
+		 * Maps the file into memory, and checks that it has the expected format and version.
+		 */
+		public static Reader open(final File file, final String format, final int version) throws IOException {
+			final ByteBuffer buffer;
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				if (channel.size() > Integer.MAX_VALUE) {
+					throw new IOException("Model file too large to map: " + file);
+				}
+				// The mapping stays valid after the channel is closed.
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+			final Reader reader = new Reader(buffer);
+			final String fileFormat = reader.readString();
+			if (!fileFormat.equals(format)) {
+				throw new IOException("Expected a file in format " + format + " but got " + fileFormat + ": " + file);
+			}
+			final int fileVersion = reader.readInt();
+			if (fileVersion != version) {
+				throw new IOException(file + " has version " + fileVersion + " of format " + format
+						+ ", but version " + version + " is required. Recompile the model.");
+			}
+
+			return reader;
+		}
+
+		public byte readByte() {
+			return buffer.get();
+		}
+
+		public int readInt() {
+			return buffer.getInt();
+		}
+
+		public long readLong() {
+			return buffer.getLong();
+		}
+
+		public float readFloat() {
+			return buffer.getFloat();
+		}
+
+		public double readDouble() {
+			return buffer.getDouble();
+		}
+
+		public String readString() {
+			final int length = buffer.getInt();
+			final byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		private void align() {
+			while (buffer.position() % 8 != 0) {
+				buffer.get();
+			}
+		}
+
+		/**
+		 * Returns the next array, as a little-endian view of the file.
+		 */
+		private ByteBuffer readArray(final int bytesPerValue) {
+			final int length = buffer.getInt();
+			align();
+			final ByteBuffer result = buffer.slice();
+			result.limit(length * bytesPerValue);
+			buffer.position(buffer.position() + length * bytesPerValue);
+			return result.order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		public ByteBuffer readBytes() {
+			return readArray(1);
+		}
+
+		public FloatBuffer readFloats() {
+			return readArray(4).asFloatBuffer();
+		}
+
+		public DoubleBuffer readDoubles() {
+			return readArray(8).asDoubleBuffer();
+		}
+
+		public LongBuffer readLongs() {
+			return readArray(8).asLongBuffer();
+		}
+	}
+}
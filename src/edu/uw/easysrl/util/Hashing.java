@@ -0,0 +1,34 @@
+package edu.uw.easysrl.util;
+
+/**
+ * 64-bit hashes of structures, built up from their int fields without allocating. With 64 bits, collisions are rare
+ * enough that hash tables can compare hashes first, and only compare the structures when the hashes are equal.
+ *
+ * Hashes of Category IDs are not stable across JVMs, so shouldn't be stored.
+ */
+public class Hashing {
+
+	private Hashing() {
+	}
+
+	/**
+	 * Adds a value to a hash. The result depends on the order values are added in.
+	 */
+	public static long mix(final long hash, final int value) {
+		return Long.rotateLeft(hash + (value & 0xFFFFFFFFL) * 0x9E3779B97F4A7C15L, 31) * 0xBF58476D1CE4E5B9L;
+	}
+
+	/**
+	 * Scrambles a hash, so that every bit of the result depends on every value mixed into it. Hashes of the elements
+	 * of a set can be added together, to give a hash that doesn't depend on their order.
+	 */
+	public static long finish(long hash) {
+		// MurmurHash3's finalizer.
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -0,0 +1,176 @@
+package edu.uw.easysrl.util;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Runs jobs on a pool of threads, most expensive first, and passes the results on in the order the jobs were submitted.
+ *
+ * Parsing time grows faster than linearly with sentence length, so if sentences are parsed in input order, a long
+ * sentence near the end of the input can leave one thread busy while the others are idle. Instead, a window of jobs is
+ * read ahead, and each thread takes the most expensive waiting job whenever it becomes free. Long sentences start
+ * early, and short ones fill the gaps.
+ *
+ * submit() blocks while the window is full, which is until the earliest job's result has been passed on.
+ */
+public class LengthAwareScheduler<I, O> implements AutoCloseable {
+
+	private final PriorityBlockingQueue<Job> queue = new PriorityBlockingQueue<>();
+	private final Semaphore window;
+	private final ReorderBuffer<Result> results;
+	private final Function<I, O> function;
+	private final ToIntFunction<I> cost;
+	private final Thread[] workers;
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+	private int nextID = 0;
+	private boolean closed = false;
+
+	/**
+	 * @param cost
+	 *            Estimated cost of each job, e.g. the length of a sentence. Jobs with the same cost run in input order, so
+	 *            a constant cost gives input-order scheduling.
+	 * @param consumer
+	 *            Receives the results in input order. It's never called concurrently. Nothing is passed on for jobs that
+	 *            return null or throw an exception or error.
+	 */
+	public LengthAwareScheduler(final int numberOfThreads, final int windowSize, final Function<I, O> function,
+			final ToIntFunction<I> cost, final Consumer<O> consumer) {
+		Preconditions.checkArgument(numberOfThreads > 0, "Number of threads must be at least 1: " + numberOfThreads);
+		Preconditions.checkArgument(windowSize > 0, "Window size must be at least 1: " + windowSize);
+		this.window = new Semaphore(windowSize);
+		this.function = function;
+		this.cost = cost;
+		this.results = new ReorderBuffer<>(0, result -> {
+			try {
+				if (result.output != null) {
+					consumer.accept(result.output);
+				}
+			} catch (final Throwable e) {
+				// Keep going, so that later results don't get stuck in the buffer.
+				failure.compareAndSet(null, e);
+			} finally {
+				window.release();
+			}
+		});
+
+		this.workers = new Thread[numberOfThreads];
+		for (int i = 0; i < numberOfThreads; i++) {
+			workers[i] = new Thread(this::work, "LengthAwareScheduler-" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Adds a job, blocking until there is space for it in the window.
+	 */
+	public void submit(final I input) throws InterruptedException {
+		Preconditions.checkState(!closed, "Scheduler is closed");
+		window.acquire();
+		queue.add(new Job(nextID, input, cost.applyAsInt(input)));
+		nextID++;
+	}
+
+	/**
+	 * Waits for all the jobs to finish and their results to be passed on, and stops the threads. If a job or the
+	 * consumer threw an exception or error, the first one is rethrown here, wrapped in a RuntimeException if it isn't
+	 * one. The results of the other jobs are still passed on.
+	 *
+	 * If the calling thread is interrupted while waiting, the workers are stopped after their current jobs, and the
+	 * interrupt flag is set again before returning. Jobs that haven't started are dropped.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		for (int i = 0; i < workers.length; i++) {
+			// Cheaper than any real job, so the workers only stop when the queue is empty.
+			queue.add(new Job(Integer.MAX_VALUE, null, Integer.MIN_VALUE));
+		}
+		try {
+			for (final Thread worker : workers) {
+				worker.join();
+			}
+		} catch (final InterruptedException e) {
+			for (final Thread worker : workers) {
+				worker.interrupt();
+			}
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		final Throwable firstFailure = failure.get();
+		if (firstFailure instanceof RuntimeException) {
+			throw (RuntimeException) firstFailure;
+		} else if (firstFailure != null) {
+			throw new RuntimeException(firstFailure);
+		}
+	}
+
+	private void work() {
+		while (true) {
+			final Job job;
+			try {
+				job = queue.take();
+			} catch (final InterruptedException e) {
+				return;
+			}
+
+			if (job.input == null) {
+				return;
+			}
+
+			O output = null;
+			try {
+				output = function.apply(job.input);
+			} catch (final Throwable e) {
+				// Including errors, such as a StackOverflowError from one sentence. Every job must add a result, or
+				// the later results would never be passed on, and submit() would block forever.
+				failure.compareAndSet(null, e);
+			}
+
+			results.add(job.id, new Result(output));
+		}
+	}
+
+	private class Job implements Comparable<Job> {
+		private final int id;
+		private final I input;
+		private final int cost;
+
+		private Job(final int id, final I input, final int cost) {
+			this.id = id;
+			this.input = input;
+			this.cost = cost;
+		}
+
+		/**
+		 * Most expensive first, and then in input order.
+		 */
+		@Override
+		public int compareTo(final Job other) {
+			final int result = Integer.compare(other.cost, cost);
+			return result != 0 ? result : Integer.compare(id, other.id);
+		}
+	}
+
+	/**
+	 * The output of a job, or null if there isn't one. ReorderBuffer doesn't accept nulls.
+	 */
+	private class Result {
+		private final O output;
+
+		private Result(final O output) {
+			this.output = output;
+		}
+	}
+}
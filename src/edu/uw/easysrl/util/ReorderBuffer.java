@@ -0,0 +1,47 @@
+package edu.uw.easysrl.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Collects results that are computed out of order (e.g. by a thread pool), and passes them on to a consumer in order
+ * of their IDs. IDs must be consecutive integers, starting from the ID supplied to the constructor.
+ */
+public class ReorderBuffer<T> {
+	private final Map<Integer, T> pending = new HashMap<>();
+	private final Consumer<T> consumer;
+	private int nextID;
+
+	public ReorderBuffer(final int firstID, final Consumer<T> consumer) {
+		this.nextID = firstID;
+		this.consumer = consumer;
+	}
+
+	/**
+	 * Adds the result with the given ID, and flushes any results that are now in order. The consumer is called while
+	 * holding the buffer's lock, so it never sees concurrent calls. Results must be non-null.
+	 */
+	public synchronized void add(final int id, final T result) {
+		Preconditions.checkNotNull(result);
+		if (id < nextID || pending.containsKey(id)) {
+			throw new IllegalArgumentException("Duplicate ID: " + id);
+		}
+
+		pending.put(id, result);
+		T next;
+		while ((next = pending.remove(nextID)) != null) {
+			consumer.accept(next);
+			nextID++;
+		}
+	}
+
+	/**
+	 * Number of results waiting for an earlier result to arrive.
+	 */
+	public synchronized int size() {
+		return pending.size();
+	}
+}
@@ -0,0 +1,111 @@
+package edu.uw.easysrl.syntax.grammar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import edu.uw.easysrl.dependencies.Coindexation;
+import edu.uw.easysrl.lemmatizer.MorphaStemmer;
+import edu.uw.easysrl.semantics.SemanticType;
+
+/**
+ * Many threads use the global caches at once, on overlapping inputs that haven't been seen before. Each distinct
+ * category should get one instance with one ID, whichever thread creates it first.
+ */
+public class GlobalCachesConcurrencyTest {
+
+	private final static int NUMBER_OF_THREADS = 16;
+	private final static int ITERATIONS = 20;
+
+	private final static String[] ATOMS = { "S[dcl]", "S[ng]", "S[pss]", "S[b]", "NP", "N", "PP", "S[to]" };
+	private final static String[] WORDS = { "running", "walked", "cats", "geese", "was", "better", "studies",
+			"flies", "parsed", "categories" };
+
+	/**
+	 * Categories such as ((S[dcl]\NP)/PP)/N[x7], with a feature that nothing else in the JVM uses, so that the
+	 * threads race to create them.
+	 */
+	private static List<String> makeCategoryStrings() {
+		final List<String> result = new ArrayList<>();
+		for (int i = 0; i < ATOMS.length; i++) {
+			for (int j = 0; j < ATOMS.length; j++) {
+				result.add("((" + ATOMS[i] + "\\NP)/" + ATOMS[j] + ")/N[x" + (i * ATOMS.length + j) + "]");
+				result.add("(" + ATOMS[i] + "/" + ATOMS[j] + ")\\NP[y" + (i * ATOMS.length + j) + "]");
+			}
+		}
+		return result;
+	}
+
+	@Test
+	public void testConcurrentCaches() throws Exception {
+		final List<String> categoryStrings = makeCategoryStrings();
+		final Map<String, Category> stringToCategory = new ConcurrentHashMap<>();
+		final Map<Category, SemanticType> categoryToType = new ConcurrentHashMap<>();
+		final Map<String, String> stems = new ConcurrentHashMap<>();
+		final CyclicBarrier barrier = new CyclicBarrier(NUMBER_OF_THREADS);
+
+		final ExecutorService executor = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+		final List<Future<?>> futures = new ArrayList<>();
+		for (int thread = 0; thread < NUMBER_OF_THREADS; thread++) {
+			final long seed = thread;
+			futures.add(executor.submit(() -> {
+				final Random random = new Random(seed);
+				for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+					final List<String> order = new ArrayList<>(categoryStrings);
+					Collections.shuffle(order, random);
+					barrier.await();
+
+					for (final String string : order) {
+						final Category category = Category.valueOf(string);
+						final Category existing = stringToCategory.putIfAbsent(string, category);
+						assertSame(string, existing == null ? category : existing, category);
+
+						final SemanticType type = SemanticType.makeFromCategory(category);
+						final SemanticType existingType = categoryToType.putIfAbsent(category, type);
+						assertSame(string, existingType == null ? type : existingType, type);
+
+						assertNotNull(Coindexation.fromString(string, 0));
+					}
+
+					for (final String word : WORDS) {
+						final String stem = MorphaStemmer.stemToken(word);
+						final String existingStem = stems.putIfAbsent(word, stem);
+						assertEquals(word, existingStem == null ? stem : existingStem, stem);
+					}
+				}
+
+				return null;
+			}));
+		}
+
+		executor.shutdown();
+		for (final Future<?> future : futures) {
+			// Rethrows any exception or assertion failure from the thread.
+			future.get();
+		}
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+
+		final Map<Integer, Category> idToCategory = new ConcurrentHashMap<>();
+		for (final String string : categoryStrings) {
+			final Category category = stringToCategory.get(string);
+			assertSame(string, category, Category.valueOf(string));
+			final Category existing = idToCategory.putIfAbsent(category.getID(), category);
+			assertSame(string, existing == null ? category : existing, category);
+		}
+		assertEquals(categoryStrings.size(), idToCategory.size());
+	}
+}
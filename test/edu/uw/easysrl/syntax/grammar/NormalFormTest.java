@@ -0,0 +1,95 @@
+package edu.uw.easysrl.syntax.grammar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.uw.easysrl.syntax.grammar.Combinator.RuleClass;
+import edu.uw.easysrl.syntax.grammar.Combinator.RuleProduction;
+import edu.uw.easysrl.syntax.grammar.Combinator.RuleType;
+
+/**
+ * Checks that the table in {@link NormalForm} gives the same answers as the original constraints, in
+ * {@link NormalFormOracle}.
+ */
+public class NormalFormTest {
+
+	private final static int NUMBER_OF_PAIRS = 200000;
+
+	/**
+	 * Categories for all the binary rules, including punctuation, conjunctions, modifiers, type-raised categories, and
+	 * [nb] features, which are removed from the results of some rules.
+	 */
+	private final static String[] CATEGORIES = { "N", "NP", "NP[nb]", "N/N", "NP[nb]/N", "NP/NP", "NP\\NP",
+			"NP/N", "N\\N", "(N/N)/(N/N)", "(NP\\NP)/NP", "(NP\\NP)/(S[dcl]\\NP)", "S[dcl]", "S", "S[X]", "S/S",
+			"S\\S", "S[dcl]\\NP", "S[b]\\NP", "S[ng]\\NP", "S[X]\\NP", "(S[dcl]\\NP)/NP", "(S[dcl]\\NP)/PP",
+			"((S[dcl]\\NP)/PP)/NP", "(S[b]\\NP)/NP", "(S[dcl]\\NP)/(S[b]\\NP)", "(S[dcl]\\NP)/S[dcl]", "(S\\NP)/NP",
+			"(S\\NP)\\(S\\NP)", "(S\\NP)/(S\\NP)", "((S\\NP)\\(S\\NP))/NP", "((S\\NP)\\(S\\NP))/S[dcl]", "PP",
+			"PP/NP", "S/(S\\NP)", "(S\\NP)\\((S\\NP)/NP)", "S[wq]", "S[wq]/(S[q]/NP)", "S[q]/NP", ",", ".", ":",
+			";", "conj", "LRB", "RRB" };
+
+	private static List<Category> makeCategories() {
+		final List<Category> result = new ArrayList<>();
+		for (final String category : CATEGORIES) {
+			result.add(Category.valueOf(category));
+		}
+		return result;
+	}
+
+	@Test
+	public void testRandomRuleProductions() {
+		final List<Category> categories = makeCategories();
+		final RuleClass[] ruleClasses = RuleClass.values();
+		final Random random = new Random(7);
+		int checked = 0;
+		for (int i = 0; i < NUMBER_OF_PAIRS; i++) {
+			final Category left = categories.get(random.nextInt(categories.size()));
+			final Category right = categories.get(random.nextInt(categories.size()));
+			for (final RuleProduction production : Combinator.getRules(left, right, Combinator.STANDARD_COMBINATORS)) {
+				final RuleClass leftRuleClass = ruleClasses[random.nextInt(ruleClasses.length)];
+				final RuleClass rightRuleClass = ruleClasses[random.nextInt(ruleClasses.length)];
+				final boolean isPrefixOfSentence = random.nextBoolean();
+				final String message = left + " " + right + " " + production.getRuleType() + " " + leftRuleClass
+						+ " " + rightRuleClass + " " + isPrefixOfSentence;
+
+				final boolean expected = NormalFormOracle.isOk(leftRuleClass, rightRuleClass,
+						production.getRuleType(), left, right, production.getCategory(), isPrefixOfSentence);
+				assertEquals(message, expected,
+						NormalForm.isOk(leftRuleClass, rightRuleClass, production, isPrefixOfSentence));
+				assertEquals(message, expected, NormalForm.isOk(leftRuleClass, rightRuleClass,
+						production.getRuleType(), left, right, production.getCategory(), isPrefixOfSentence));
+				checked++;
+			}
+		}
+
+		// Most random pairs of categories don't combine.
+		assertTrue("Only " + checked + " rule productions", checked > NUMBER_OF_PAIRS / 10);
+	}
+
+	@Test
+	public void testAllCombinations() {
+		final Category left = Category.valueOf("NP");
+		final Category right = Category.valueOf("N");
+		final Category other = Category.valueOf("S[dcl]");
+		for (final RuleClass leftRuleClass : RuleClass.values()) {
+			for (final RuleClass rightRuleClass : RuleClass.values()) {
+				for (final RuleType ruleType : RuleType.values()) {
+					for (final Category result : new Category[] { right, other }) {
+						for (final boolean isPrefixOfSentence : new boolean[] { false, true }) {
+							assertEquals(leftRuleClass + " " + rightRuleClass + " " + ruleType + " " + result + " "
+									+ isPrefixOfSentence, NormalFormOracle.isOk(leftRuleClass, rightRuleClass,
+									ruleType, left, right, result, isPrefixOfSentence), NormalForm.isOk(
+									leftRuleClass, rightRuleClass, ruleType, left, right, result,
+									isPrefixOfSentence));
+						}
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package edu.uw.easysrl.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+/**
+ * Jobs that throw must not stop the other results being passed on. The window is smaller than the number of jobs, so
+ * a result that never arrives would block submit() forever, and the tests would time out.
+ */
+public class LengthAwareSchedulerTest {
+
+	private final static int NUMBER_OF_JOBS = 20;
+	private final static int FAILING_JOB = 1;
+
+	/**
+	 * Runs the jobs 0 to NUMBER_OF_JOBS - 1, adding the results to the list.
+	 */
+	private static void runJobs(final Function<Integer, Integer> function, final List<Integer> results)
+			throws InterruptedException {
+		final LengthAwareScheduler<Integer, Integer> scheduler = new LengthAwareScheduler<>(2, 2, function,
+				input -> input % 3, results::add);
+		try {
+			for (int i = 0; i < NUMBER_OF_JOBS; i++) {
+				scheduler.submit(i);
+			}
+		} finally {
+			scheduler.close();
+		}
+	}
+
+	private static List<Integer> expectedResults() {
+		final List<Integer> result = new ArrayList<>();
+		for (int i = 0; i < NUMBER_OF_JOBS; i++) {
+			if (i != FAILING_JOB) {
+				result.add(i);
+			}
+		}
+		return result;
+	}
+
+	@Test(timeout = 10000)
+	public void testResultsInInputOrder() throws InterruptedException {
+		final List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < NUMBER_OF_JOBS; i++) {
+			expected.add(i);
+		}
+		final List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+		runJobs(input -> input, results);
+		assertEquals(expected, results);
+	}
+
+	@Test(timeout = 10000)
+	public void testJobThrowsException() throws InterruptedException {
+		final List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+		final IllegalStateException exception = new IllegalStateException("job " + FAILING_JOB);
+		try {
+			runJobs(input -> {
+				if (input == FAILING_JOB) {
+					throw exception;
+				}
+				return input;
+			}, results);
+			fail("No exception from close()");
+		} catch (final IllegalStateException e) {
+			assertSame(exception, e);
+		}
+
+		assertEquals(expectedResults(), results);
+	}
+
+	@Test(timeout = 10000)
+	public void testJobThrowsError() throws InterruptedException {
+		final List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+		try {
+			runJobs(input -> {
+				if (input == FAILING_JOB) {
+					throw new StackOverflowError();
+				}
+				return input;
+			}, results);
+			fail("No exception from close()");
+		} catch (final RuntimeException e) {
+			assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof StackOverflowError);
+		}
+
+		assertEquals(expectedResults(), results);
+	}
+}